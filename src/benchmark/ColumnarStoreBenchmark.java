@@ -0,0 +1,98 @@
+package benchmark;
+
+import database.BatchResult;
+import database.ClientDAO;
+import database.DatabaseConnection;
+import database.StorageProfile;
+import models.Bank;
+import models.Client;
+import models.ClientType;
+import models.ColumnarClientStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+// Память и время полной загрузки из SQLite: объекты Client в Bank (ClientDAO.getAllClients)
+// против столбцового хранилища (ClientDAO.loadAllInto). Память - прирост занятой кучи после
+// сборки мусора, пока загруженные данные достижимы.
+// Запуск: java -cp out:sqlite-jdbc.jar benchmark.ColumnarStoreBenchmark [клиентов]
+public class ColumnarStoreBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        File file = File.createTempFile("bank_columnar", ".db");
+        file.deleteOnExit();
+        new File(file + "-wal").deleteOnExit();
+        new File(file + "-shm").deleteOnExit();
+        DatabaseConnection.setStorageProfile(StorageProfile.BULK_LOAD);
+        DatabaseConnection.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        DatabaseConnection.initializeDatabase();
+        ClientDAO dao = new ClientDAO();
+        fill(dao, count);
+
+        System.out.printf("Клиентов: %d%n", count);
+        System.out.println("Хранилище            | загрузка, мс | куча, МБ | байт/клиент");
+        for (int round = 0; round < 2; round++) {
+            // Первый круг - прогрев, печатается второй
+            boolean print = round == 1;
+
+            long before = usedHeap();
+            long start = System.nanoTime();
+            Bank bank = new Bank();
+            for (Client client : dao.getAllClients()) {
+                bank.addClient(client);
+            }
+            long elapsed = System.nanoTime() - start;
+            long heap = usedHeap() - before;
+            if (print) report("Bank (Client)", elapsed, heap, bank.getClientCount());
+            bank = null;
+
+            before = usedHeap();
+            start = System.nanoTime();
+            ColumnarClientStore store = new ColumnarClientStore();
+            dao.loadAllInto(store);
+            elapsed = System.nanoTime() - start;
+            heap = usedHeap() - before;
+            if (print) report("ColumnarClientStore", elapsed, heap, store.size());
+            store = null;
+        }
+
+        DatabaseConnection.closeConnection();
+        file.delete();
+    }
+
+    private static void fill(ClientDAO dao, int count) throws Exception {
+        ClientType[] types = ClientType.values();
+        List<Client> clients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            clients.add(types[i % types.length].createClient("Клиент " + i, String.format("%010d", i), 100_000 + i));
+        }
+        BatchResult result = dao.saveAll(clients);
+        if (result.getError() != null) {
+            throw result.getError();
+        }
+    }
+
+    private static void report(String title, long elapsedNanos, long heapBytes, int size) {
+        System.out.printf("%-20s | %12.0f | %8.1f | %11.0f%n", title, elapsedNanos / 1e6,
+                heapBytes / (1024.0 * 1024.0), (double) heapBytes / size);
+    }
+
+    // Несколько проходов сборщика, пока занятая память не перестанет уменьшаться
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
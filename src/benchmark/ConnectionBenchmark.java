@@ -0,0 +1,91 @@
+package benchmark;
+
+import database.ClientDAO;
+import database.DatabaseConnection;
+import models.Client;
+import models.SimpleClient;
+
+import java.io.File;
+import java.sql.*;
+
+// Сравнение работы с БД до и после DatabaseConnection с постоянными соединениями:
+// N пар clientExists + saveClient, как при импорте файла.
+// "До" повторяет прежнюю схему: соединение открывается и закрывается на каждый вызов,
+// SQL подготавливается заново. Запуск: java -cp out:sqlite-jdbc.jar benchmark.ConnectionBenchmark [N]
+public class ConnectionBenchmark {
+    private static final String INSERT_SQL = "INSERT INTO clients (passport, name, deposit_kopecks, client_type, bonus_type, bonus_value) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String EXISTS_SQL = "SELECT 1 FROM clients WHERE passport = ?";
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        // Отдельный временный файл, чтобы не трогать рабочую БД
+        File file = File.createTempFile("bank_benchmark", ".db");
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        DatabaseConnection.setUrl(url);
+        DatabaseConnection.initializeDatabase();
+
+        long before = runReopening(url, count);
+        clear();
+        long after = runManaged(count);
+
+        System.out.printf("Вызовов: %d x (clientExists + saveClient)%n", count);
+        System.out.printf("До (соединение на вызов):       %8d мс, %8.0f пар/с%n", before / 1_000_000, count * 1e9 / before);
+        System.out.printf("После (соединение потока, кэш): %8d мс, %8.0f пар/с%n", after / 1_000_000, count * 1e9 / after);
+        DatabaseConnection.closeConnection();
+    }
+
+    private static long runReopening(String url, int count) throws SQLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Client client = client(i);
+            boolean exists;
+            try (Connection conn = DriverManager.getConnection(url);
+                 PreparedStatement pstmt = conn.prepareStatement(EXISTS_SQL)) {
+                pstmt.setString(1, client.getPassport());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    exists = rs.next();
+                }
+            }
+            if (!exists) {
+                try (Connection conn = DriverManager.getConnection(url)) {
+                    // Без сравнения UNICODE_NOCASE индекс по ФИО не дает вставить строку
+                    DatabaseConnection.registerFunctions(conn);
+                    try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                        pstmt.setString(1, client.getPassport());
+                        pstmt.setString(2, client.getName());
+                        pstmt.setLong(3, client.getDepositKopecks());
+                        pstmt.setString(4, client.getType());
+                        pstmt.setString(5, client.getBonusStrategy().getCode());
+                        pstmt.setDouble(6, client.getBonusStrategy().getValue());
+                        pstmt.executeUpdate();
+                    }
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runManaged(int count) throws SQLException {
+        ClientDAO dao = new ClientDAO();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Client client = client(i);
+            if (!dao.clientExists(client.getPassport())) {
+                dao.saveClient(client);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void clear() throws SQLException {
+        try (Statement stmt = DatabaseConnection.getConnection().createStatement()) {
+            stmt.execute("DELETE FROM clients");
+        }
+    }
+
+    private static Client client(int id) {
+        return new SimpleClient("Клиент " + id, String.format("%010d", id), 100_000 + id);
+    }
+}
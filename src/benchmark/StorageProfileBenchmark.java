@@ -0,0 +1,84 @@
+package benchmark;
+
+import database.BatchResult;
+import database.ClientDAO;
+import database.DatabaseConnection;
+import database.StorageProfile;
+import models.Client;
+import models.SimpleClient;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// Пропускная способность SQLite в разных профилях хранения на свежем временном файле:
+// одиночные вставки (фиксация на каждую строку), пакетная вставка saveAll и полное чтение.
+// Первая строка - прежний режим без настроек (журнал отката, synchronous = FULL).
+// Запуск: java -cp out:sqlite-jdbc.jar benchmark.StorageProfileBenchmark [одиночных] [пакетных]
+public class StorageProfileBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int single = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int bulk = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        System.out.printf("Одиночных вставок: %d, пакетных: %d (строк/с)%n", single, bulk);
+        System.out.println("Профиль       | одиночные | saveAll  | чтение");
+        run("без настроек", null, single, bulk);
+        for (StorageProfile profile : StorageProfile.values()) {
+            run(profile.name(), profile, single, bulk);
+        }
+        DatabaseConnection.closeConnection();
+    }
+
+    private static void run(String title, StorageProfile profile, int single, int bulk) throws Exception {
+        File file = File.createTempFile("bank_profile", ".db");
+        file.deleteOnExit();
+        new File(file + "-wal").deleteOnExit();
+        new File(file + "-shm").deleteOnExit();
+
+        DatabaseConnection.setStorageProfile(profile != null ? profile : StorageProfile.DURABLE);
+        DatabaseConnection.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        if (profile == null) {
+            try (Statement stmt = DatabaseConnection.getConnection().createStatement()) {
+                stmt.execute("PRAGMA journal_mode = DELETE");
+                stmt.execute("PRAGMA synchronous = FULL");
+                stmt.execute("PRAGMA cache_size = -2000");
+                stmt.execute("PRAGMA mmap_size = 0");
+            }
+        }
+        DatabaseConnection.initializeDatabase();
+        ClientDAO dao = new ClientDAO();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < single; i++) {
+            dao.saveClient(client(i));
+        }
+        double singleRate = single * 1e9 / (System.nanoTime() - start);
+
+        List<Client> clients = new ArrayList<>(bulk);
+        for (int i = 0; i < bulk; i++) {
+            clients.add(client(single + i));
+        }
+        start = System.nanoTime();
+        BatchResult result = dao.saveAll(clients);
+        double bulkRate = bulk * 1e9 / (System.nanoTime() - start);
+        if (result.getError() != null) {
+            throw result.getError();
+        }
+
+        long[] rows = new long[1];
+        start = System.nanoTime();
+        dao.forEachClient(client -> rows[0]++);
+        double readRate = rows[0] * 1e9 / (System.nanoTime() - start);
+
+        System.out.printf("%-13s | %9.0f | %8.0f | %8.0f%n", title, singleRate, bulkRate, readRate);
+        DatabaseConnection.closeConnection();
+        file.delete();
+    }
+
+    private static Client client(int id) {
+        return new SimpleClient("Клиент " + id, String.format("%010d", id), 100_000 + id);
+    }
+}
@@ -0,0 +1,441 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Сжатый контейнер резервной копии (*.bankbak). Файл БД сжимается потоково блоками
+// по BLOCK_SIZE байт (Deflate), у каждого блока своя контрольная сумма CRC32C.
+//
+// Формат (числа - big-endian):
+//   заголовок: MAGIC, длина и текст манифеста (строки "ключ=значение"), CRC32C манифеста
+//   блоки:     метод (0 - без сжатия, 1 - Deflate), исходная длина, длина данных, CRC32C данных, данные
+//   индекс:    смещение, исходная длина и длина данных каждого блока
+//   концевик:  смещение индекса, число блоков, исходный размер, SHA-256 исходного файла,
+//              CRC32C индекса и концевика, END_MAGIC
+// check() читает только заголовок, индекс и концевик, поэтому обрезанный или испорченный
+// по структуре файл отклоняется без чтения данных. Данные блоков проверяются при распаковке.
+public final class BackupContainer {
+    public static final String EXTENSION = ".bankbak";
+    public static final int BLOCK_SIZE = 1 << 20;
+
+    private static final byte[] MAGIC = "BANKBKP1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_MAGIC = "BANKEND1".getBytes(StandardCharsets.US_ASCII);
+    private static final int BLOCK_HEADER_SIZE = 13;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int TRAILER_SIZE = 8 + 4 + 8 + 32 + 4 + 8;
+    private static final int MAX_MANIFEST_SIZE = 64 * 1024;
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+
+    public interface ProgressListener {
+        void onProgress(long processed, long total);
+    }
+
+    public record Info(Map<String, String> manifest, long originalSize, long compressedSize, int blockCount) {
+        public double ratio() {
+            return compressedSize == 0 ? 0 : (double) originalSize / compressedSize;
+        }
+    }
+
+    private record Index(Map<String, String> manifest, long indexOffset, int blockCount,
+                         long originalSize, byte[] sha256, long[] offsets, int[] originalLengths,
+                         int[] storedLengths) {
+    }
+
+    private BackupContainer() {
+    }
+
+    public static boolean isContainer(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(EXTENSION);
+    }
+
+    // Сжимает source в target (через временный файл рядом с target). manifest - описание копии.
+    public static Info write(Path source, Path target, Map<String, String> manifest, ProgressListener listener)
+            throws IOException {
+        long originalSize = Files.size(source);
+        Map<String, String> header = new LinkedHashMap<>(manifest);
+        header.put("originalSize", Long.toString(originalSize));
+        header.put("blockSize", Integer.toString(BLOCK_SIZE));
+        header.put("compression", "deflate");
+
+        Path absolute = target.toAbsolutePath();
+        Path partial = Paths.get(absolute + ".part");
+        int blockCount = (int) ((originalSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        long[] offsets = new long[blockCount];
+        int[] originalLengths = new int[blockCount];
+        int[] storedLengths = new int[blockCount];
+        MessageDigest digest = sha256();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        CRC32C crc = new CRC32C();
+
+        ByteBuffer input = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        ByteBuffer output = ByteBuffer.allocateDirect(BLOCK_SIZE + BLOCK_SIZE / 64 + 1024);
+        ByteBuffer blockHeader = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE);
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, encodeManifest(header));
+
+            long processed = 0;
+            for (int block = 0; block < blockCount; block++) {
+                input.clear();
+                input.limit((int) Math.min(BLOCK_SIZE, originalSize - processed));
+                readFully(in, input, processed);
+                if (input.hasRemaining()) {
+                    throw new IOException("Файл БД изменился во время сжатия: " + source.getFileName());
+                }
+                input.flip();
+                int length = input.remaining();
+
+                digest.update(input.duplicate());
+                deflater.reset();
+                deflater.setInput(input.duplicate());
+                deflater.finish();
+                output.clear();
+                while (!deflater.finished() && output.hasRemaining()) {
+                    deflater.deflate(output);
+                }
+
+                // Несжимаемый блок хранится как есть
+                ByteBuffer stored;
+                byte method;
+                if (deflater.finished() && output.position() < length) {
+                    output.flip();
+                    stored = output;
+                    method = DEFLATED;
+                } else {
+                    stored = input;
+                    method = STORED;
+                }
+
+                crc.reset();
+                crc.update(stored.duplicate());
+                blockHeader.clear();
+                blockHeader.put(method).putInt(length).putInt(stored.remaining()).putInt((int) crc.getValue());
+                blockHeader.flip();
+
+                offsets[block] = out.position();
+                originalLengths[block] = length;
+                storedLengths[block] = stored.remaining();
+                writeFully(out, blockHeader);
+                writeFully(out, stored);
+
+                processed += length;
+                if (listener != null) {
+                    listener.onProgress(processed, originalSize);
+                }
+            }
+
+            long indexOffset = out.position();
+            writeFully(out, encodeIndex(offsets, originalLengths, storedLengths, indexOffset, originalSize, digest.digest()));
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        } finally {
+            deflater.end();
+        }
+
+        Files.move(partial, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Info(header, originalSize, Files.size(absolute), blockCount);
+    }
+
+    // Быстрая проверка структуры: заголовок, индекс и концевик (без чтения данных блоков)
+    public static Info check(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Index index = readIndex(channel);
+            return new Info(index.manifest(), index.originalSize(), channel.size(), index.blockCount());
+        }
+    }
+
+    // Распаковывает контейнер в target. Блок с неверной контрольной суммой прерывает распаковку сразу,
+    // в конце сверяется SHA-256 всего файла; при ошибке target не создается.
+    public static Info extract(Path container, Path target, ProgressListener listener) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path partial = Paths.get(absolute + ".part");
+        Inflater inflater = new Inflater();
+        CRC32C crc = new CRC32C();
+        MessageDigest digest = sha256();
+        Info info;
+
+        try (FileChannel in = FileChannel.open(container, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Index index = readIndex(in);
+            info = new Info(index.manifest(), index.originalSize(), in.size(), index.blockCount());
+
+            ByteBuffer blockHeader = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE);
+            ByteBuffer stored = ByteBuffer.allocateDirect(maxLength(index.storedLengths()));
+            ByteBuffer output = ByteBuffer.allocateDirect(maxLength(index.originalLengths()));
+            long processed = 0;
+
+            for (int block = 0; block < index.blockCount(); block++) {
+                blockHeader.clear();
+                readFully(in, blockHeader, index.offsets()[block]);
+                blockHeader.flip();
+                if (blockHeader.remaining() < BLOCK_HEADER_SIZE) {
+                    throw corrupted(container, "блок " + block + " обрезан");
+                }
+                byte method = blockHeader.get();
+                int originalLength = blockHeader.getInt();
+                int storedLength = blockHeader.getInt();
+                int expectedCrc = blockHeader.getInt();
+                if (originalLength != index.originalLengths()[block] || storedLength != index.storedLengths()[block]) {
+                    throw corrupted(container, "заголовок блока " + block + " не совпадает с индексом");
+                }
+
+                stored.clear();
+                stored.limit(storedLength);
+                readFully(in, stored, index.offsets()[block] + BLOCK_HEADER_SIZE);
+                stored.flip();
+                crc.reset();
+                crc.update(stored.duplicate());
+                if (stored.remaining() != storedLength || (int) crc.getValue() != expectedCrc) {
+                    throw corrupted(container, "контрольная сумма блока " + block + " не совпадает");
+                }
+
+                ByteBuffer data;
+                if (method == STORED) {
+                    data = stored;
+                } else if (method == DEFLATED) {
+                    output.clear();
+                    output.limit(originalLength);
+                    inflater.reset();
+                    inflater.setInput(stored);
+                    try {
+                        while (!inflater.finished() && output.hasRemaining()) {
+                            if (inflater.inflate(output) == 0 && inflater.needsInput()) {
+                                break;
+                            }
+                        }
+                    } catch (DataFormatException e) {
+                        throw corrupted(container, "блок " + block + " не распаковывается");
+                    }
+                    if (!inflater.finished() || output.hasRemaining()) {
+                        throw corrupted(container, "неверная длина блока " + block);
+                    }
+                    output.flip();
+                    data = output;
+                } else {
+                    throw corrupted(container, "неизвестный метод сжатия блока " + block);
+                }
+
+                digest.update(data.duplicate());
+                writeFully(out, data);
+                processed += originalLength;
+                if (listener != null) {
+                    listener.onProgress(processed, index.originalSize());
+                }
+            }
+
+            if (!Arrays.equals(digest.digest(), index.sha256())) {
+                throw corrupted(container, "SHA-256 распакованного файла не совпадает");
+            }
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        } finally {
+            inflater.end();
+        }
+
+        Files.move(partial, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return info;
+    }
+
+    private static Index readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < MAGIC.length + 8 + TRAILER_SIZE) {
+            throw new IOException("Файл слишком мал для резервной копии");
+        }
+
+        // Заголовок и манифест
+        ByteBuffer head = ByteBuffer.allocate(MAGIC.length + 4);
+        readFully(channel, head, 0);
+        head.flip();
+        if (!startsWith(head, MAGIC)) {
+            throw new IOException("Файл не является резервной копией программы");
+        }
+        head.position(MAGIC.length);
+        int manifestLength = head.getInt();
+        if (manifestLength < 0 || manifestLength > MAX_MANIFEST_SIZE) {
+            throw new IOException("Поврежден заголовок резервной копии");
+        }
+        ByteBuffer manifestBytes = ByteBuffer.allocate(manifestLength + 4);
+        readFully(channel, manifestBytes, MAGIC.length + 4);
+        manifestBytes.flip();
+        if (manifestBytes.remaining() != manifestLength + 4) {
+            throw new IOException("Поврежден заголовок резервной копии");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(manifestBytes.array(), 0, manifestLength);
+        manifestBytes.position(manifestLength);
+        if ((int) crc.getValue() != manifestBytes.getInt()) {
+            throw new IOException("Контрольная сумма заголовка резервной копии не совпадает");
+        }
+        Map<String, String> manifest = decodeManifest(new String(manifestBytes.array(), 0, manifestLength, StandardCharsets.UTF_8));
+        long dataStart = MAGIC.length + 4 + manifestLength + 4;
+
+        // Концевик
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(channel, trailer, size - TRAILER_SIZE);
+        trailer.flip();
+        trailer.position(TRAILER_SIZE - END_MAGIC.length);
+        if (!startsWith(trailer.slice(), END_MAGIC)) {
+            throw new IOException("Резервная копия обрезана или повреждена (нет концевика)");
+        }
+        trailer.position(0);
+        long indexOffset = trailer.getLong();
+        int blockCount = trailer.getInt();
+        long originalSize = trailer.getLong();
+        byte[] sha256 = new byte[32];
+        trailer.get(sha256);
+        int expectedCrc = trailer.getInt();
+
+        long indexLength = (long) blockCount * INDEX_ENTRY_SIZE;
+        if (blockCount < 0 || indexOffset < dataStart || indexOffset + indexLength + TRAILER_SIZE != size) {
+            throw new IOException("Поврежден индекс резервной копии");
+        }
+
+        // Индекс: смещения должны идти подряд от начала данных до индекса
+        ByteBuffer index = ByteBuffer.allocate((int) indexLength);
+        readFully(channel, index, indexOffset);
+        index.flip();
+        crc.reset();
+        crc.update(index.array(), 0, (int) indexLength);
+        crc.update(trailer.array(), 0, TRAILER_SIZE - END_MAGIC.length - 4);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Контрольная сумма индекса резервной копии не совпадает");
+        }
+
+        long[] offsets = new long[blockCount];
+        int[] originalLengths = new int[blockCount];
+        int[] storedLengths = new int[blockCount];
+        long expectedOffset = dataStart;
+        long total = 0;
+        for (int i = 0; i < blockCount; i++) {
+            offsets[i] = index.getLong();
+            originalLengths[i] = index.getInt();
+            storedLengths[i] = index.getInt();
+            if (offsets[i] != expectedOffset || originalLengths[i] <= 0 || originalLengths[i] > BLOCK_SIZE
+                    || storedLengths[i] < 0 || storedLengths[i] > originalLengths[i]) {
+                throw new IOException("Поврежден индекс резервной копии (блок " + i + ")");
+            }
+            expectedOffset += BLOCK_HEADER_SIZE + storedLengths[i];
+            total += originalLengths[i];
+        }
+        if (expectedOffset != indexOffset || total != originalSize) {
+            throw new IOException("Поврежден индекс резервной копии");
+        }
+
+        return new Index(manifest, indexOffset, blockCount, originalSize, sha256,
+                offsets, originalLengths, storedLengths);
+    }
+
+    private static ByteBuffer encodeManifest(Map<String, String> manifest) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            text.append(entry.getKey()).append('=').append(entry.getValue().replace('\n', ' ')).append('\n');
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length + 4 + bytes.length + 4);
+        buffer.put(MAGIC).putInt(bytes.length).put(bytes).putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+
+    private static Map<String, String> decodeManifest(String text) {
+        Map<String, String> manifest = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                manifest.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        return manifest;
+    }
+
+    private static ByteBuffer encodeIndex(long[] offsets, int[] originalLengths, int[] storedLengths,
+                                          long indexOffset, long originalSize, byte[] sha256) {
+        int blockCount = offsets.length;
+        ByteBuffer buffer = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+        for (int i = 0; i < blockCount; i++) {
+            buffer.putLong(offsets[i]).putInt(originalLengths[i]).putInt(storedLengths[i]);
+        }
+        buffer.putLong(indexOffset).putInt(blockCount).putLong(originalSize).put(sha256);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue()).put(END_MAGIC);
+        return buffer.flip();
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(buffer.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int maxLength(int[] lengths) {
+        int max = 1;
+        for (int length : lengths) {
+            max = Math.max(max, length);
+        }
+        return max;
+    }
+
+    private static IOException corrupted(Path file, String reason) {
+        return new IOException("Резервная копия " + file.getFileName() + " повреждена: " + reason);
+    }
+
+    // До заполнения буфера или конца файла
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                return;
+            }
+            offset += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+// Итог пакетной операции ClientDAO: результат для каждой строки в порядке входного списка
+public class BatchResult {
+    public enum Outcome {
+        APPLIED,    // строка записана
+        INSERTED,   // upsert: добавлена новая строка
+        UPDATED,    // upsert: существующая строка изменена
+        UNCHANGED,  // upsert: данные совпали, запись пропущена
+        DUPLICATE,  // вставка пропущена: паспорт уже есть в БД
+        NOT_FOUND,  // обновлять или удалять нечего
+        FAILED      // пакет с этой строкой откатан из-за ошибки
+    }
+
+    private final Outcome[] outcomes;
+    private SQLException error;
+
+    BatchResult(int size) {
+        outcomes = new Outcome[size];
+        Arrays.fill(outcomes, Outcome.FAILED);
+    }
+
+    void set(int index, Outcome outcome) {
+        outcomes[index] = outcome;
+    }
+
+    void fail(SQLException error) {
+        this.error = error;
+    }
+
+    public Outcome get(int index) {
+        return outcomes[index];
+    }
+
+    public int size() {
+        return outcomes.length;
+    }
+
+    public int count(Outcome outcome) {
+        int count = 0;
+        for (Outcome value : outcomes) {
+            if (value == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Ошибка, на которой операция остановилась; null - все пакеты записаны
+    public SQLException getError() {
+        return error;
+    }
+
+    public boolean isComplete() {
+        return error == null;
+    }
+}
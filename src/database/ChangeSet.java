@@ -0,0 +1,18 @@
+package database;
+
+import models.Client;
+
+import java.util.List;
+
+// Изменения таблицы clients после известной версии: добавленные и измененные клиенты
+// и удаленные паспорта. version - версия БД, до которой изменения учтены;
+// ее передают в следующий ClientDAO.changesSince.
+public record ChangeSet(long version, List<Client> changed, List<String> removed) {
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+
+    public int size() {
+        return changed.size() + removed.size();
+    }
+}
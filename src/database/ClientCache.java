@@ -0,0 +1,213 @@
+package database;
+
+import models.BonusStrategy;
+import models.Client;
+import models.ClientType;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ограниченный LRU-кэш строк клиентов перед запросами ClientDAO по паспорту.
+// Хранит и отсутствующие паспорта (отрицательные записи), чтобы повторные проверки не шли в БД.
+// Client изменяем, поэтому в кэше лежат только значения строки, а объект создается при каждом попадании.
+// Перед чтением ClientDAO сверяет кэш со счетчиком изменений БД (change_counter): строки,
+// измененные после прошлой сверки любым соединением, вытесняются, поэтому clear() вызывать не нужно.
+// Запись clients в этом процессе (любой ClientDAO, RerateJob) требует сверки сразу,
+// остальные изменения (другие процессы) проверяются не чаще раза в SYNC_INTERVAL_MILLIS.
+public class ClientCache {
+    public static final long SYNC_INTERVAL_MILLIS = 100;
+    private static final long SYNC_INTERVAL_NANOS = SYNC_INTERVAL_MILLIS * 1_000_000;
+
+    // Число записей clients в этом процессе
+    private static final AtomicLong LOCAL_WRITES = new AtomicLong();
+
+    record Row(String name, long deposit, ClientType type, BonusStrategy bonus) {
+        Client toClient(String passport) {
+            return type.restoreClient(name, passport, deposit, bonus);
+        }
+    }
+
+    // Отрицательная запись: паспорта в БД нет
+    static final Row ABSENT = new Row(null, 0, null, null);
+
+    private final int capacity;
+    private final LinkedHashMap<String, Row> rows;
+
+    // Растет при каждой записи; результат чтения, начатого до записи, в кэш не кладется
+    private long version;
+
+    // Версия БД и поколение соединений (DatabaseConnection.getGeneration), с которыми сверен кэш,
+    // а также число записей процесса и время на момент сверки
+    private long syncedVersion = -1;
+    private long syncedGeneration = -1;
+    private long syncedLocalWrites = -1;
+    private long syncedAtNanos;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ClientCache(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Размер кэша не может быть отрицательным");
+        this.capacity = capacity;
+        this.rows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Row> eldest) {
+                if (size() > ClientCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized void clear() {
+        rows.clear();
+        version++;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Кэш клиентов: %d/%d, попаданий %d, промахов %d (%.1f%%), вытеснений %d",
+                rows.size(), capacity, hits, misses, getHitRate() * 100, evictions);
+    }
+
+    // null - промах, ABSENT - паспорта нет в БД
+    synchronized Row get(String passport) {
+        Row row = rows.get(passport);
+        if (row != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return row;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    // Вызывается при записи clients в обход ClientDAO (пакетный пересчет)
+    static void noteLocalWrite() {
+        LOCAL_WRITES.incrementAndGet();
+    }
+
+    static long localWrites() {
+        return LOCAL_WRITES.get();
+    }
+
+    // Сверка нужна после записи в этом процессе, смены поколения или по истечении интервала
+    synchronized boolean needsSync(long generation, long localWrites, long nowNanos) {
+        return generation != syncedGeneration || localWrites != syncedLocalWrites
+                || nowNanos - syncedAtNanos >= SYNC_INTERVAL_NANOS;
+    }
+
+    // -1 - кэш не сверялся с БД этого поколения
+    synchronized long syncedVersion(long generation) {
+        return generation == syncedGeneration ? syncedVersion : -1;
+    }
+
+    // Счетчик БД не сдвинулся с прошлой сверки
+    synchronized void markSynced(long generation, long dbVersion, long localWrites, long nowNanos) {
+        if (generation == syncedGeneration && dbVersion == syncedVersion) {
+            syncedLocalWrites = localWrites;
+            syncedAtNanos = nowNanos;
+        }
+    }
+
+    // Сверка с БД: changed - паспорта, измененные после since; null - сверить можно только очисткой.
+    // Если другой поток успел сверить кэш раньше, since устарела - тоже очищаем.
+    // localWrites и nowNanos - значения, взятые до чтения БД.
+    synchronized void sync(long generation, long since, long dbVersion, Collection<String> changed,
+                           long localWrites, long nowNanos) {
+        version++;
+        if (changed == null || generation != syncedGeneration || since != syncedVersion) {
+            rows.clear();
+        } else {
+            for (String passport : changed) {
+                rows.remove(passport);
+            }
+        }
+        syncedGeneration = generation;
+        syncedVersion = dbVersion;
+        syncedLocalWrites = localWrites;
+        syncedAtNanos = nowNanos;
+    }
+
+    // Результат чтения из БД; client == null - паспорт не найден
+    synchronized void putLoaded(String passport, Client client, long readVersion) {
+        if (capacity > 0 && version == readVersion) {
+            rows.put(passport, client != null ? toRow(client) : ABSENT);
+        }
+    }
+
+    // Состояние, которое только что записано через DAO
+    synchronized void putWritten(Client client) {
+        noteLocalWrite();
+        version++;
+        if (capacity > 0) {
+            rows.put(client.getPassport(), toRow(client));
+        }
+    }
+
+    synchronized void putRemoved(String passport) {
+        noteLocalWrite();
+        version++;
+        if (capacity > 0) {
+            rows.put(passport, ABSENT);
+        }
+    }
+
+    // Результат записи неизвестен (пакет, дубликат, ошибка) - следующее чтение пойдет в БД
+    synchronized void invalidate(String passport) {
+        noteLocalWrite();
+        version++;
+        rows.remove(passport);
+    }
+
+    synchronized void invalidateAll(Iterable<String> passports) {
+        noteLocalWrite();
+        version++;
+        for (String passport : passports) {
+            rows.remove(passport);
+        }
+    }
+
+    private static Row toRow(Client client) {
+        return new Row(client.getName(), client.getDepositKopecks(), client.getClientType(), client.getBonusStrategy());
+    }
+}
@@ -4,146 +4,730 @@ import models.*;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+// Запросы выполняются на соединении текущего потока из DatabaseConnection,
+// подготовленные выражения берутся из его кэша и не закрываются после вызова
 public class ClientDAO {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final String INSERT_SQL = "INSERT INTO clients (passport, name, deposit_kopecks, client_type, bonus_type, bonus_value) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_OR_IGNORE_SQL = "INSERT OR IGNORE INTO clients (passport, name, deposit_kopecks, client_type, bonus_type, bonus_value) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_IF_ABSENT_SQL = INSERT_SQL + " ON CONFLICT(passport) DO NOTHING";
+    // Обновление только при отличии данных: для совпадающей строки число изменений 0
+    private static final String UPSERT_SQL = INSERT_SQL + """
+             ON CONFLICT(passport) DO UPDATE SET
+                name = excluded.name, deposit_kopecks = excluded.deposit_kopecks, client_type = excluded.client_type,
+                bonus_type = excluded.bonus_type, bonus_value = excluded.bonus_value
+            WHERE (name, deposit_kopecks, client_type, bonus_type, bonus_value)
+                IS NOT (excluded.name, excluded.deposit_kopecks, excluded.client_type, excluded.bonus_type, excluded.bonus_value)""";
+    private static final String UPDATE_SQL = "UPDATE clients SET name = ?, deposit_kopecks = ?, client_type = ?, bonus_type = ?, bonus_value = ? WHERE passport = ?";
+    private static final String DELETE_SQL = "DELETE FROM clients WHERE passport = ?";
+    private static final String SELECT_ALL_SQL = "SELECT passport, name, deposit_kopecks, client_type, bonus_type, bonus_value FROM clients";
+
+    // Строк в одном пакете (и одной транзакции) для saveAll/updateAll/deleteAll
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    // Кэш запросов по паспорту; запись через этот DAO обновляет его, остальные изменения
+    // БД находятся по счетчику изменений (syncCache)
+    private final ClientCache cache;
+    private final SettingsDAO settingsDAO = new SettingsDAO();
+
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pstmt, T row) throws SQLException;
+    }
+
+    public ClientDAO() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    public ClientDAO(int batchSize) {
+        this(batchSize, DEFAULT_CACHE_SIZE);
+    }
+
+    // cacheSize == 0 - без кэша
+    public ClientDAO(int batchSize, int cacheSize) {
+        setBatchSize(batchSize);
+        cache = new ClientCache(cacheSize);
+    }
+
+    public ClientCache getCache() {
+        return cache;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Размер пакета должен быть больше 0");
+        this.batchSize = batchSize;
+    }
 
     public void saveClient(Client client) throws SQLException {
-        String sql = "INSERT INTO clients (passport, name, deposit, client_type, bonus_type, bonus_value) VALUES (?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, client.getPassport());
-            pstmt.setString(2, client.getName());
-            pstmt.setDouble(3, client.getDeposit());
-            pstmt.setString(4, client.getType());
-
-            // Сохраняем информацию о бонусе
-            BonusStrategy bonus = client.getBonusStrategy();
-            if (bonus instanceof PercentageBonus) {
-                pstmt.setString(5, "percentage");
-                pstmt.setDouble(6, 0.1); // для VIP
-            } else if (bonus instanceof FixedBonus) {
-                pstmt.setString(5, "fixed");
-                pstmt.setDouble(6, 3000); // для пенсионеров
-            } else {
-                pstmt.setString(5, "none");
-                pstmt.setDouble(6, 0);
-            }
+        PreparedStatement pstmt = DatabaseConnection.prepare(INSERT_SQL);
+        bindInsert(pstmt, client);
+        cache.invalidate(client.getPassport());
+        pstmt.executeUpdate();
+        cache.putWritten(client);
+    }
 
-            pstmt.executeUpdate();
+    // Вставка одним запросом вместо clientExists + saveClient; false - паспорт уже занят
+    public boolean insertIfAbsent(Client client) throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(INSERT_IF_ABSENT_SQL);
+        bindInsert(pstmt, client);
+        cache.invalidate(client.getPassport());
+        boolean inserted = pstmt.executeUpdate() > 0;
+        if (inserted) {
+            cache.putWritten(client);
         }
+        return inserted;
+    }
+
+    // Вставка или обновление одним запросом; false - в БД уже те же данные
+    public boolean upsertClient(Client client) throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(UPSERT_SQL);
+        bindInsert(pstmt, client);
+        cache.invalidate(client.getPassport());
+        boolean changed = pstmt.executeUpdate() > 0;
+        cache.putWritten(client);
+        return changed;
     }
 
     public void updateClient(Client client) throws SQLException {
-        String sql = "UPDATE clients SET name = ?, deposit = ?, client_type = ?, bonus_type = ?, bonus_value = ? WHERE passport = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, client.getName());
-            pstmt.setDouble(2, client.getDeposit());
-            pstmt.setString(3, client.getType());
-
-            BonusStrategy bonus = client.getBonusStrategy();
-            if (bonus instanceof PercentageBonus) {
-                pstmt.setString(4, "percentage");
-                pstmt.setDouble(5, 0.1);
-            } else if (bonus instanceof FixedBonus) {
-                pstmt.setString(4, "fixed");
-                pstmt.setDouble(5, 3000);
+        PreparedStatement pstmt = DatabaseConnection.prepare(UPDATE_SQL);
+        bindUpdate(pstmt, client);
+        cache.invalidate(client.getPassport());
+        if (pstmt.executeUpdate() > 0) {
+            cache.putWritten(client);
+        } else {
+            cache.putRemoved(client.getPassport());
+        }
+    }
+
+    public void deleteClient(String passport) throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(DELETE_SQL);
+        pstmt.setString(1, passport);
+        cache.invalidate(passport);
+        pstmt.executeUpdate();
+        cache.putRemoved(passport);
+    }
+
+    // Пакетная вставка: существующие паспорта (в БД или раньше в списке) пропускаются как DUPLICATE
+    public BatchResult saveAll(List<Client> clients) {
+        try {
+            return executeBatched(INSERT_OR_IGNORE_SQL, clients, ClientDAO::bindInsert, BatchResult.Outcome.DUPLICATE);
+        } finally {
+            cache.invalidateAll(passports(clients));
+        }
+    }
+
+    public BatchResult updateAll(List<Client> clients) {
+        try {
+            return executeBatched(UPDATE_SQL, clients, ClientDAO::bindUpdate, BatchResult.Outcome.NOT_FOUND);
+        } finally {
+            cache.invalidateAll(passports(clients));
+        }
+    }
+
+    public BatchResult deleteAll(List<String> passports) {
+        try {
+            return executeBatched(DELETE_SQL, passports, (pstmt, passport) -> pstmt.setString(1, passport),
+                    BatchResult.Outcome.NOT_FOUND);
+        } finally {
+            cache.invalidateAll(passports);
+        }
+    }
+
+    // Паспорта пакетных операций только вычеркиваются из кэша: перечитать их дешевле, чем разбирать результат
+    private static List<String> passports(List<Client> clients) {
+        List<String> result = new ArrayList<>(clients.size());
+        for (Client client : clients) {
+            result.add(client.getPassport());
+        }
+        return result;
+    }
+
+    // Пакетный upsert с результатом INSERTED / UPDATED / UNCHANGED для каждой строки.
+    // Какие паспорта уже есть, выясняется одним запросом на пакет в той же транзакции;
+    // если другой писатель успеет изменить БД между чтением и записью, пакет откатится с ошибкой.
+    public BatchResult upsertAll(List<Client> clients) {
+        try {
+            return upsertBatched(clients);
+        } finally {
+            cache.invalidateAll(passports(clients));
+        }
+    }
+
+    private BatchResult upsertBatched(List<Client> clients) {
+        BatchResult result = new BatchResult(clients.size());
+        if (clients.isEmpty()) {
+            return result;
+        }
+
+        try {
+            Connection conn = DatabaseConnection.getConnection();
+            PreparedStatement pstmt = DatabaseConnection.prepare(UPSERT_SQL);
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (int start = 0; start < clients.size(); start += batchSize) {
+                    List<Client> batch = clients.subList(start, Math.min(start + batchSize, clients.size()));
+                    Set<String> existing;
+                    int[] counts;
+                    try {
+                        existing = findExistingPassports(batch);
+                        for (Client client : batch) {
+                            bindInsert(pstmt, client);
+                            pstmt.addBatch();
+                        }
+                        counts = pstmt.executeBatch();
+                        conn.commit();
+                    } catch (SQLException e) {
+                        pstmt.clearBatch();
+                        conn.rollback();
+                        result.fail(e);
+                        return result;
+                    }
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        // Повтор паспорта внутри пакета обновляет строку, добавленную выше
+                        boolean existed = !existing.add(batch.get(i).getPassport());
+                        BatchResult.Outcome outcome = counts[i] == 0 ? BatchResult.Outcome.UNCHANGED
+                                : existed ? BatchResult.Outcome.UPDATED : BatchResult.Outcome.INSERTED;
+                        result.set(start + i, outcome);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            result.fail(e);
+        }
+        return result;
+    }
+
+    private Set<String> findExistingPassports(List<Client> batch) throws SQLException {
+        // Всегда batchSize параметров (лишние - NULL), чтобы в кэше было одно выражение
+        StringBuilder sql = new StringBuilder("SELECT passport FROM clients WHERE passport IN (");
+        for (int i = 0; i < batchSize; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        PreparedStatement pstmt = DatabaseConnection.prepare(sql.toString());
+        for (int i = 0; i < batchSize; i++) {
+            if (i < batch.size()) {
+                pstmt.setString(i + 1, batch.get(i).getPassport());
             } else {
-                pstmt.setString(4, "none");
-                pstmt.setDouble(5, 0);
+                pstmt.setNull(i + 1, Types.VARCHAR);
             }
+        }
 
-            pstmt.setString(6, client.getPassport());
-            pstmt.executeUpdate();
+        Set<String> existing = new HashSet<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                existing.add(rs.getString(1));
+            }
         }
+        return existing;
     }
 
-    public void deleteClient(String passport) throws SQLException {
-        String sql = "DELETE FROM clients WHERE passport = ?";
+    // Каждые batchSize строк - один executeBatch и одна транзакция (один fsync вместо fsync на строку).
+    // При ошибке текущий пакет откатывается, записанные ранее пакеты остаются, остальные строки - FAILED.
+    private <T> BatchResult executeBatched(String sql, List<T> rows, RowBinder<T> binder,
+                                           BatchResult.Outcome whenUnchanged) {
+        BatchResult result = new BatchResult(rows.size());
+        if (rows.isEmpty()) {
+            return result;
+        }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try {
+            Connection conn = DatabaseConnection.getConnection();
+            PreparedStatement pstmt = DatabaseConnection.prepare(sql);
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (int start = 0; start < rows.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, rows.size());
+                    int[] counts;
+                    try {
+                        for (int i = start; i < end; i++) {
+                            binder.bind(pstmt, rows.get(i));
+                            pstmt.addBatch();
+                        }
+                        counts = pstmt.executeBatch();
+                        conn.commit();
+                    } catch (SQLException e) {
+                        pstmt.clearBatch();
+                        conn.rollback();
+                        result.fail(e);
+                        return result;
+                    }
 
-            pstmt.setString(1, passport);
-            pstmt.executeUpdate();
+                    for (int i = start; i < end; i++) {
+                        result.set(i, counts[i - start] > 0 ? BatchResult.Outcome.APPLIED : whenUnchanged);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            result.fail(e);
         }
+        return result;
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Client client) throws SQLException {
+        pstmt.setString(1, client.getPassport());
+        pstmt.setString(2, client.getName());
+        pstmt.setLong(3, client.getDepositKopecks());
+        pstmt.setString(4, client.getType());
+
+        // Сохраняем информацию о бонусе
+        BonusStrategy bonus = client.getBonusStrategy();
+        pstmt.setString(5, bonus.getCode());
+        pstmt.setDouble(6, bonus.getValue());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Client client) throws SQLException {
+        pstmt.setString(1, client.getName());
+        pstmt.setLong(2, client.getDepositKopecks());
+        pstmt.setString(3, client.getType());
+
+        BonusStrategy bonus = client.getBonusStrategy();
+        pstmt.setString(4, bonus.getCode());
+        pstmt.setDouble(5, bonus.getValue());
+
+        pstmt.setString(6, client.getPassport());
     }
 
     public List<Client> getAllClients() throws SQLException {
         List<Client> clients = new ArrayList<>();
-        String sql = "SELECT * FROM clients";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        forEachClient(clients::add);
+        return clients;
+    }
 
+    // Потоковое чтение: клиенты передаются по одному, пока курсор идет по таблице,
+    // полный список в памяти не собирается
+    public void forEachClient(Consumer<Client> action) throws SQLException {
+        try (Statement stmt = openStreamingStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
             while (rs.next()) {
-                String passport = rs.getString("passport");
-                String name = rs.getString("name");
-                double deposit = rs.getDouble("deposit");
-                String type = rs.getString("client_type");
-
-                Client client;
-                switch (type.toLowerCase()) {
-                    case "вип":
-                        client = new VIPClient(name, passport, deposit);
-                        break;
-                    case "пенсионер":
-                        client = new PensionerClient(name, passport, deposit);
-                        break;
-                    default:
-                        client = new SimpleClient(name, passport, deposit);
+                action.accept(mapRow(rs));
+            }
+        }
+    }
+
+    // Тот же обход в виде Stream. Курсор открыт до закрытия потока, поэтому
+    // поток нужно закрывать: try (Stream<Client> clients = dao.streamClients()) { ... }
+    public Stream<Client> streamClients() throws SQLException {
+        Statement stmt = openStreamingStatement();
+        ResultSet rs;
+        try {
+            rs = stmt.executeQuery(SELECT_ALL_SQL);
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+
+        Spliterator<Client> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Client> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapRow(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Ошибка чтения клиентов из БД", e);
                 }
+            }
+        };
 
-                clients.add(client);
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                rs.close();
+                stmt.close();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Ошибка закрытия курсора", e);
             }
+        });
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    // Подсказка драйверу, сколько строк читать за раз при потоковом обходе
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("Размер выборки должен быть больше 0");
+        this.fetchSize = fetchSize;
+    }
+
+    // Отдельное выражение, а не из кэша: открытый курсор не должен сбрасываться другими вызовами DAO
+    private Statement openStreamingStatement() throws SQLException {
+        Statement stmt = DatabaseConnection.getConnection().createStatement();
+        stmt.setFetchSize(fetchSize);
+        return stmt;
+    }
+
+    // Столбцы по номерам в порядке SELECT_ALL_SQL, без поиска по имени для каждой строки.
+    // Стратегия восстанавливается по bonus_type/bonus_value строки: сумма содержит бонус именно по ней.
+    private static Client mapRow(ResultSet rs) throws SQLException {
+        ClientType type = ClientType.fromTitle(rs.getString(4));
+        return type.restoreClient(rs.getString(2), rs.getString(1), rs.getLong(3), mapBonus(rs, type, 5));
+    }
+
+    private static BonusStrategy mapBonus(ResultSet rs, ClientType type, int firstColumn) throws SQLException {
+        return BonusRegistry.restore(type, rs.getString(firstColumn), rs.getDouble(firstColumn + 1));
+    }
+
+    // Постраничное чтение по ключу (keyset): WHERE (ключ, паспорт) > (?, ?) вместо OFFSET,
+    // поэтому каждая страница читается по индексу независимо от ее номера.
+    // after == null - первая страница. Встроенный NOCASE игнорирует регистр только латиницы,
+    // поэтому ключи сравниваются UNICODE_NOCASE - тем же порядком, что и в Bank.
+    public List<Client> getClientsPage(SortOrder order, Client after, int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше 0");
         }
 
-        return clients;
+        String key = switch (order) {
+            case NAME -> "name COLLATE " + DatabaseConnection.UNICODE_NOCASE;
+            case DEPOSIT -> "deposit_kopecks";
+            case TYPE -> "client_type COLLATE " + DatabaseConnection.UNICODE_NOCASE;
+            case INSERTION -> throw new IllegalArgumentException("Постраничное чтение требует упорядоченного ключа");
+        };
+
+        String sql = SELECT_ALL_SQL +
+                (after != null ? " WHERE (" + key + ", passport) > (?, ?)" : "") +
+                " ORDER BY " + key + ", passport LIMIT ?";
+
+        List<Client> page = new ArrayList<>();
+
+        PreparedStatement pstmt = DatabaseConnection.prepare(sql);
+        int index = 1;
+        if (after != null) {
+            switch (order) {
+                case NAME -> pstmt.setString(index++, after.getName());
+                case DEPOSIT -> pstmt.setLong(index++, after.getDepositKopecks());
+                default -> pstmt.setString(index++, after.getType());
+            }
+            pstmt.setString(index++, after.getPassport());
+        }
+        pstmt.setInt(index, limit);
+
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                page.add(mapRow(rs));
+            }
+        }
+
+        return page;
     }
 
-    public Client getClientByPassport(String passport) throws SQLException {
-        String sql = "SELECT * FROM clients WHERE passport = ?";
+    // Клиенты одного типа, крупные вклады первыми (индекс client_type, deposit_kopecks)
+    public List<Client> findByType(ClientType type, int limit) throws SQLException {
+        checkLimit(limit);
+        PreparedStatement pstmt = DatabaseConnection.prepare(SELECT_ALL_SQL +
+                " WHERE client_type = ? ORDER BY deposit_kopecks DESC LIMIT ?");
+        pstmt.setString(1, type.getTitle());
+        pstmt.setInt(2, limit);
+        return queryClients(pstmt);
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Вклады в диапазоне [min, max] копеек по возрастанию суммы
+    public List<Client> findByDepositRange(long minKopecks, long maxKopecks, int limit) throws SQLException {
+        checkLimit(limit);
+        PreparedStatement pstmt = DatabaseConnection.prepare(SELECT_ALL_SQL +
+                " WHERE deposit_kopecks BETWEEN ? AND ? ORDER BY deposit_kopecks, passport LIMIT ?");
+        pstmt.setLong(1, minKopecks);
+        pstmt.setLong(2, maxKopecks);
+        pstmt.setInt(3, limit);
+        return queryClients(pstmt);
+    }
 
-            pstmt.setString(1, passport);
-            ResultSet rs = pstmt.executeQuery();
+    // limit крупнейших вкладов: обход индекса с конца, без сортировки всей таблицы
+    public List<Client> findLargestDeposits(int limit) throws SQLException {
+        checkLimit(limit);
+        PreparedStatement pstmt = DatabaseConnection.prepare(SELECT_ALL_SQL +
+                " ORDER BY deposit_kopecks DESC, passport DESC LIMIT ?");
+        pstmt.setInt(1, limit);
+        return queryClients(pstmt);
+    }
 
-            if (rs.next()) {
-                String name = rs.getString("name");
-                double deposit = rs.getDouble("deposit");
-                String type = rs.getString("client_type");
-
-                switch (type.toLowerCase()) {
-                    case "вип":
-                        return new VIPClient(name, passport, deposit);
-                    case "пенсионер":
-                        return new PensionerClient(name, passport, deposit);
-                    default:
-                        return new SimpleClient(name, passport, deposit);
+    // Агрегаты по всей таблице одним запросом, без загрузки клиентов
+    public DepositStatistics getStatistics() throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(
+                "SELECT COUNT(*), SUM(deposit_kopecks), MIN(deposit_kopecks), MAX(deposit_kopecks) FROM clients");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? mapStatistics(rs, 1) : DepositStatistics.EMPTY;
+        }
+    }
+
+    // Агрегаты по типам клиентов (GROUP BY по индексу типа); для типов без клиентов - EMPTY
+    public Map<ClientType, DepositStatistics> getStatisticsByType() throws SQLException {
+        Map<ClientType, DepositStatistics> result = new EnumMap<>(ClientType.class);
+        for (ClientType type : ClientType.values()) {
+            result.put(type, DepositStatistics.EMPTY);
+        }
+
+        PreparedStatement pstmt = DatabaseConnection.prepare("""
+                SELECT client_type, COUNT(*), SUM(deposit_kopecks), MIN(deposit_kopecks), MAX(deposit_kopecks)
+                FROM clients GROUP BY client_type""");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                result.merge(ClientType.fromTitle(rs.getString(1)), mapStatistics(rs, 2), DepositStatistics::merge);
+            }
+        }
+        return result;
+    }
+
+    private static DepositStatistics mapStatistics(ResultSet rs, int firstColumn) throws SQLException {
+        int count = rs.getInt(firstColumn);
+        if (count == 0) {
+            return DepositStatistics.EMPTY;
+        }
+        return new DepositStatistics(count, rs.getLong(firstColumn + 1),
+                rs.getLong(firstColumn + 2), rs.getLong(firstColumn + 3));
+    }
+
+    private static List<Client> queryClients(PreparedStatement pstmt) throws SQLException {
+        List<Client> result = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                result.add(mapRow(rs));
+            }
+        }
+        return result;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер выборки должен быть больше 0");
+        }
+    }
+
+    // Поиск по вхождению в ФИО без загрузки таблицы в память (полный просмотр на стороне SQLite)
+    public List<Client> searchByName(String query, int limit) throws SQLException {
+        List<Client> result = new ArrayList<>();
+        String normalized = NameSearchIndex.normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return result;
+        }
+
+        String sql = SELECT_ALL_SQL + " WHERE search_name(name) LIKE ? ESCAPE '\\' ORDER BY name LIMIT ?";
+        String pattern = "%" + normalized.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+
+        PreparedStatement pstmt = DatabaseConnection.prepare(sql);
+        pstmt.setString(1, pattern);
+        pstmt.setInt(2, limit);
+
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                result.add(mapRow(rs));
+            }
+        }
+
+        return result;
+    }
+
+    // Текущая версия БД: номер последнего изменения таблицы clients
+    public long getChangeVersion() throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare("SELECT version FROM change_counter WHERE id = 1");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Клиенты, измененные после version, и паспорта, удаленные после нее (по индексам row_version).
+    // Все читается в одной транзакции, чтобы версия и строки относились к одному снимку БД.
+    public ChangeSet changesSince(long version) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            long current = getChangeVersion();
+            List<Client> changed = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+
+            PreparedStatement pstmt = DatabaseConnection.prepare(SELECT_ALL_SQL + " WHERE row_version > ?");
+            pstmt.setLong(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    changed.add(mapRow(rs));
                 }
             }
+
+            pstmt = DatabaseConnection.prepare("SELECT passport FROM client_tombstones WHERE row_version > ?");
+            pstmt.setLong(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    removed.add(rs.getString(1));
+                }
+            }
+
+            conn.commit();
+            return new ChangeSet(current, changed, removed);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
         }
+    }
 
-        return null;
+    // Надгробия до version включительно больше не нужны читателю, который синхронизирован с ней.
+    // Граница запоминается: кэш, сверенный с более старой версией, удаления уже не увидит и очищается
+    public int pruneTombstones(long version) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement pstmt = DatabaseConnection.prepare("DELETE FROM client_tombstones WHERE row_version <= ?");
+            pstmt.setLong(1, version);
+            int pruned = pstmt.executeUpdate();
+            if (version > getTombstonesPrunedThrough()) {
+                settingsDAO.put(SettingsDAO.TOMBSTONES_PRUNED_THROUGH, Long.toString(version));
+            }
+            conn.commit();
+            return pruned;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private long getTombstonesPrunedThrough() throws SQLException {
+        String value = settingsDAO.get(SettingsDAO.TOMBSTONES_PRUNED_THROUGH);
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE; // Граница неизвестна - считаем удалениями все
+        }
+    }
+
+    // Сверка кэша с БД перед чтением из него. Без записи в этом процессе - не чаще раза
+    // в ClientCache.SYNC_INTERVAL_MILLIS, между сверками попадание не обращается к SQLite.
+    // Если счетчик изменений не сдвинулся, сверка - один запрос; иначе из кэша убираются
+    // паспорта строк и надгробий новее прошлой сверки. Очистка целиком - после замены файла БД
+    // или удаления нужных надгробий.
+    private void syncCache() throws SQLException {
+        if (cache.getCapacity() == 0) {
+            return;
+        }
+        long generation = DatabaseConnection.getGeneration();
+        long localWrites = ClientCache.localWrites();
+        long now = System.nanoTime();
+        if (!cache.needsSync(generation, localWrites, now)) {
+            return;
+        }
+        long since = cache.syncedVersion(generation);
+        if (getChangeVersion() == since) {
+            cache.markSynced(generation, since, localWrites, now);
+            return;
+        }
+
+        // Версия и список изменений - из одного снимка БД (внутри транзакции вызывающего - из его)
+        Connection conn = DatabaseConnection.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            long current = getChangeVersion();
+            List<String> changed = null;
+            if (since >= 0 && current > since && getTombstonesPrunedThrough() <= since) {
+                changed = new ArrayList<>();
+                PreparedStatement pstmt = DatabaseConnection.prepare(
+                        "SELECT passport FROM clients WHERE row_version > ? " +
+                                "UNION ALL SELECT passport FROM client_tombstones WHERE row_version > ?");
+                pstmt.setLong(1, since);
+                pstmt.setLong(2, since);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        changed.add(rs.getString(1));
+                    }
+                }
+            }
+            if (autoCommit) {
+                conn.commit();
+            }
+            cache.sync(generation, since, current, changed, localWrites, now);
+        } catch (SQLException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Загрузка прямо в столбцовое хранилище, без создания объектов Client
+    public void loadAllInto(ColumnarClientStore store) throws SQLException {
+        try (Statement stmt = openStreamingStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
+
+            while (rs.next()) {
+                ClientType type = ClientType.fromTitle(rs.getString(4));
+                store.addClient(rs.getString(2), rs.getString(1), rs.getLong(3), type, mapBonus(rs, type, 5));
+            }
+        }
+    }
+
+    // Сначала кэш (в том числе "паспорта нет"), при промахе - БД с сохранением результата в кэш
+    public Client getClientByPassport(String passport) throws SQLException {
+        syncCache();
+        ClientCache.Row cached = cache.get(passport);
+        if (cached != null) {
+            return cached == ClientCache.ABSENT ? null : cached.toClient(passport);
+        }
+
+        long version = cache.version();
+        Client client = loadClientByPassport(passport);
+        cache.putLoaded(passport, client, version);
+        return client;
     }
 
+    // Промах кэша загружает строку целиком: следующий getClientByPassport тоже попадет в кэш
     public boolean clientExists(String passport) throws SQLException {
-        String sql = "SELECT 1 FROM clients WHERE passport = ?";
+        syncCache();
+        ClientCache.Row cached = cache.get(passport);
+        if (cached != null) {
+            return cached != ClientCache.ABSENT;
+        }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        long version = cache.version();
+        Client client = loadClientByPassport(passport);
+        cache.putLoaded(passport, client, version);
+        return client != null;
+    }
 
-            pstmt.setString(1, passport);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next();
+    private Client loadClientByPassport(String passport) throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(SELECT_ALL_SQL + " WHERE passport = ?");
+        pstmt.setString(1, passport);
+
+        // Открытый ResultSet держит блокировку чтения, поэтому закрываем его сразу.
+        // В БД хранится сумма с уже начисленным бонусом - mapRow не начисляет его повторно.
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                return mapRow(rs);
+            }
         }
+
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -2,13 +2,24 @@ package database;
 
 import javax.swing.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class DatabaseBackup {
 
+    private static final byte[] SQLITE_HEADER = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+
+    // Сколько инкрементальных авто-копий хранить
+    private static final int AUTO_BACKUP_KEEP = 30;
+
     // Папка для сохранения по умолчанию - Downloads
     private static final String DEFAULT_BACKUP_DIR = getDownloadsPath();
 
@@ -37,15 +48,17 @@ public class DatabaseBackup {
         JFileChooser fileChooser = createFileChooser("Сохранить резервную копию базы данных");
 
         // Устанавливаем имя файла по умолчанию с датой
-        String defaultFileName = "bank_backup_" + getCurrentTimestamp() + ".db";
+        // По умолчанию - сжатый контейнер; при выборе имени *.db сохраняется обычная копия файла
+        String defaultFileName = "bank_backup_" + getCurrentTimestamp() + BackupContainer.EXTENSION;
         fileChooser.setSelectedFile(new File(DEFAULT_BACKUP_DIR, defaultFileName));
 
         if (fileChooser.showSaveDialog(parent) == JFileChooser.APPROVE_OPTION) {
             File backupFile = fileChooser.getSelectedFile();
 
-            // Добавляем расширение .db если его нет
-            if (!backupFile.getName().toLowerCase().endsWith(".db")) {
-                backupFile = new File(backupFile.getAbsolutePath() + ".db");
+            // Добавляем расширение, если его нет
+            String fileName = backupFile.getName().toLowerCase();
+            if (!fileName.endsWith(".db") && !fileName.endsWith(BackupContainer.EXTENSION)) {
+                backupFile = new File(backupFile.getAbsolutePath() + BackupContainer.EXTENSION);
             }
 
             // Проверяем, можно ли записать в выбранное место
@@ -61,7 +74,8 @@ public class DatabaseBackup {
         }
     }
 
-    public static void restoreDatabase(JFrame parent) {
+    // true - файл БД заменен копией
+    public static boolean restoreDatabase(JFrame parent) {
         JFileChooser fileChooser = createFileChooser("Выберите файл резервной копии для восстановления");
 
         // Начинаем с папки Downloads
@@ -74,12 +88,13 @@ public class DatabaseBackup {
                 if (f.isDirectory()) return true;
                 String name = f.getName().toLowerCase();
                 return name.endsWith(".db") || name.endsWith(".sqlite") ||
-                        name.endsWith(".sqlite3") || name.endsWith(".backup");
+                        name.endsWith(".sqlite3") || name.endsWith(".backup") ||
+                        name.endsWith(IncrementalBackup.MANIFEST_SUFFIX) || name.endsWith(BackupContainer.EXTENSION);
             }
 
             @Override
             public String getDescription() {
-                return "Файлы базы данных (*.db, *.sqlite, *.sqlite3, *.backup)";
+                return "Файлы базы данных (*.bankbak, *.db, *.sqlite, *.sqlite3, *.backup, *.manifest)";
             }
         });
 
@@ -90,16 +105,17 @@ public class DatabaseBackup {
             String validationError = validateBackupFile(backupFile);
             if (validationError != null) {
                 showErrorMessage(parent, validationError, "Ошибка файла");
-                return;
+                return false;
             }
 
             // Подтверждение восстановления
             if (!confirmRestore(parent, backupFile)) {
-                return;
+                return false;
             }
 
-            performRestore(parent, backupFile);
+            return performRestore(parent, backupFile);
         }
+        return false;
     }
 
     private static JFileChooser createFileChooser(String title) {
@@ -143,11 +159,34 @@ public class DatabaseBackup {
             return "Файл пуст: " + file.getName();
         }
 
+        // Сжатая копия: проверяются заголовок, индекс и контрольные суммы, данные блоков не читаются
+        if (BackupContainer.isContainer(file.toPath())) {
+            try {
+                BackupContainer.check(file.toPath());
+                return null;
+            } catch (IOException e) {
+                return "Файл резервной копии поврежден: " + file.getName() + "\n" + e.getMessage();
+            }
+        }
+        if (file.getName().endsWith(IncrementalBackup.MANIFEST_SUFFIX)) {
+            return null; // Фрагменты проверяются при сборке копии
+        }
+
         // Минимальный размер для SQLite файла
         if (file.length() < 100) {
             return "Файл слишком маленький для базы данных SQLite: " + file.getName();
         }
 
+        // Файл SQLite начинается с "SQLite format 3\0"
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] header = in.readNBytes(SQLITE_HEADER.length);
+            if (!Arrays.equals(header, SQLITE_HEADER)) {
+                return "Файл не является базой данных SQLite: " + file.getName();
+            }
+        } catch (IOException e) {
+            return "Не удалось прочитать файл: " + file.getName();
+        }
+
         return null; // Файл валиден
     }
 
@@ -175,9 +214,10 @@ public class DatabaseBackup {
         return choice == JOptionPane.YES_OPTION;
     }
 
+    // Копирование идет в фоновом потоке (окно не блокируется) с индикатором прогресса
     private static void performBackup(JFrame parent, File backupFile) {
         try {
-            Path source = Paths.get("bank_database.db");
+            Path source = DatabaseConnection.getDatabasePath();
 
             // Проверяем, существует ли исходная БД
             if (!Files.exists(source) || Files.size(source) == 0) {
@@ -187,48 +227,118 @@ public class DatabaseBackup {
                         "База данных пуста");
                 return;
             }
+        } catch (IOException e) {
+            showBackupError(parent, e);
+            return;
+        }
 
-            // Создаем резервную копию текущей БД (если существует)
-            createPreBackupIfNeeded();
-
-            // Копируем файл
-            Files.copy(source, backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        ProgressMonitor monitor = new ProgressMonitor(parent, "Создание резервной копии...", backupFile.getName(), 0, 100);
+        monitor.setMillisToDecideToPopup(200);
 
-            // Проверяем, что копия создана успешно
-            if (!backupFile.exists() || backupFile.length() == 0) {
-                throw new IOException("Не удалось создать резервную копию");
+        SwingWorker<String, Void> worker = new SwingWorker<>() {
+            // Возвращает строку с размером копии для сообщения
+            @Override
+            protected String doInBackground() throws Exception {
+                long start = System.nanoTime();
+                // Создаем резервную копию текущей БД (если существует)
+                createPreBackupIfNeeded();
+
+                Path target = backupFile.toPath();
+                if (!BackupContainer.isContainer(target)) {
+                    OnlineBackup.Result result = new OnlineBackup().backup(target, (copied, total) ->
+                            setProgress(total > 0 ? (int) ((long) copied * 100 / total) : 100));
+                    return "Размер: " + formatFileSize(result.sizeBytes()) + "\n" +
+                            String.format("Время: %.1f с%n", (System.nanoTime() - start) / 1e9);
+                }
+
+                // Снимок БД (первая половина прогресса), затем сжатие в контейнер (вторая)
+                Path snapshot = Paths.get(target.toAbsolutePath() + ".snapshot");
+                try {
+                    new OnlineBackup().backup(snapshot, (copied, total) ->
+                            setProgress(total > 0 ? (int) ((long) copied * 50 / total) : 50));
+                    Map<String, String> manifest = new LinkedHashMap<>();
+                    manifest.put("created", getCurrentTimestamp());
+                    manifest.put("source", DatabaseConnection.getDatabasePath().getFileName().toString());
+                    manifest.put("content", "sqlite3");
+                    BackupContainer.Info info = BackupContainer.write(snapshot, target, manifest, (processed, total) ->
+                            setProgress(total > 0 ? (int) (50 + processed * 50 / total) : 100));
+                    return "Размер: " + formatFileSize(info.compressedSize()) +
+                            String.format(" (БД %s, сжатие в %.1f раза)%n", formatFileSize(info.originalSize()), info.ratio()) +
+                            String.format("Время: %.1f с%n", (System.nanoTime() - start) / 1e9);
+                } finally {
+                    Files.deleteIfExists(snapshot);
+                }
             }
 
-            showSuccessMessage(parent,
-                    "✅ РЕЗЕРВНАЯ КОПИЯ УСПЕШНО СОЗДАНА\n\n" +
-                            "Файл: " + backupFile.getName() + "\n" +
-                            "Размер: " + formatFileSize(backupFile.length()) + "\n" +
-                            "Путь: " + backupFile.getParent() + "\n\n" +
-                            "Резервная копия сохранена в папке Downloads.",
-                    "Резервное копирование завершено");
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    String details = get();
+                    showSuccessMessage(parent,
+                            "✅ РЕЗЕРВНАЯ КОПИЯ УСПЕШНО СОЗДАНА\n\n" +
+                                    "Файл: " + backupFile.getName() + "\n" +
+                                    details +
+                                    "Путь: " + backupFile.getParent() + "\n\n" +
+                                    "Резервная копия сохранена в папке Downloads.",
+                            "Резервное копирование завершено");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    showBackupError(parent, e.getCause() instanceof Exception cause ? cause : e);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                monitor.setProgress((Integer) evt.getNewValue());
+            }
+        });
+        worker.execute();
+    }
 
-        } catch (Exception e) {
-            showErrorMessage(parent,
-                    "❌ ОШИБКА СОЗДАНИЯ РЕЗЕРВНОЙ КОПИИ\n\n" +
-                            "Причина: " + getFriendlyErrorMessage(e) + "\n\n" +
-                            "Рекомендации:\n" +
-                            "1. Закройте базу данных в других программах\n" +
-                            "2. Проверьте свободное место на диске\n" +
-                            "3. Попробуйте другую папку для сохранения",
-                    "Ошибка резервного копирования");
-        }
+    private static void showBackupError(JFrame parent, Exception e) {
+        showErrorMessage(parent,
+                "❌ ОШИБКА СОЗДАНИЯ РЕЗЕРВНОЙ КОПИИ\n\n" +
+                        "Причина: " + getFriendlyErrorMessage(e) + "\n\n" +
+                        "Рекомендации:\n" +
+                        "1. Закройте базу данных в других программах\n" +
+                        "2. Проверьте свободное место на диске\n" +
+                        "3. Попробуйте другую папку для сохранения",
+                "Ошибка резервного копирования");
     }
 
-    private static void performRestore(JFrame parent, File backupFile) {
+    private static boolean performRestore(JFrame parent, File backupFile) {
+        Path assembled = null;
         try {
             Path source = backupFile.toPath();
-            Path target = Paths.get("bank_database.db");
+            Path target = DatabaseConnection.getDatabasePath();
+
+            // Инкрементальная и сжатая копии сначала собираются в отдельный файл
+            // (с проверкой контрольных сумм), текущая БД до этого не трогается
+            if (backupFile.getName().endsWith(IncrementalBackup.MANIFEST_SUFFIX)) {
+                assembled = Paths.get(target + ".restore");
+                new IncrementalBackup(source.toAbsolutePath().getParent()).restore(source, assembled);
+                source = assembled;
+            } else if (BackupContainer.isContainer(source)) {
+                assembled = Paths.get(target + ".restore");
+                BackupContainer.extract(source, assembled, null);
+                source = assembled;
+            }
 
             // Создаем резервную копию текущей БД перед заменой
             createPreRestoreBackup();
 
+            // Открытые соединения держат файл, закрываем их перед заменой.
+            // Журнал WAL от старого файла не должен примениться к восстановленному
+            DatabaseConnection.closeConnection();
+            Files.deleteIfExists(Paths.get(target + "-wal"));
+            Files.deleteIfExists(Paths.get(target + "-shm"));
+
             // Копируем файл резервной копии
             Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            // Копия могла быть сделана старой версией программы - обновляем схему
+            DatabaseConnection.initializeDatabase();
 
             // Проверяем, что восстановление прошло успешно
             if (!Files.exists(target) || Files.size(target) == 0) {
@@ -243,6 +353,7 @@ public class DatabaseBackup {
                             "• Старая БД сохранена как: bank_database_pre_restore.db\n\n" +
                             "⚠️  ПЕРЕЗАПУСТИТЕ ПРИЛОЖЕНИЕ для применения изменений!",
                     "Восстановление завершено");
+            return true;
 
         } catch (Exception e) {
             showErrorMessage(parent,
@@ -253,29 +364,44 @@ public class DatabaseBackup {
                             "2. Освободить место на диске\n" +
                             "3. Запустить приложение от имени администратора",
                     "Ошибка восстановления");
+            return false;
+        } finally {
+            if (assembled != null) {
+                try {
+                    Files.deleteIfExists(assembled);
+                } catch (IOException e) {
+                    // Временный файл не мешает работе
+                }
+            }
         }
     }
 
-    private static void createPreBackupIfNeeded() throws IOException {
-        Path currentDb = Paths.get("bank_database.db");
+    private static void createPreBackupIfNeeded() throws IOException, SQLException {
+        Path currentDb = DatabaseConnection.getDatabasePath();
         if (Files.exists(currentDb) && Files.size(currentDb) > 0) {
-            Path backup = Paths.get("bank_database_autobackup.db");
-            Files.copy(currentDb, backup, StandardCopyOption.REPLACE_EXISTING);
+            new OnlineBackup().backup(Paths.get("bank_database_autobackup.db"), null);
         }
     }
 
-    private static void createPreRestoreBackup() throws IOException {
-        Path currentDb = Paths.get("bank_database.db");
+    private static void createPreRestoreBackup() throws IOException, SQLException {
+        Path currentDb = DatabaseConnection.getDatabasePath();
         if (Files.exists(currentDb) && Files.size(currentDb) > 0) {
-            Path backup = Paths.get("bank_database_pre_restore.db");
-            Files.copy(currentDb, backup, StandardCopyOption.REPLACE_EXISTING);
+            // Без пауз: восстановление все равно ждет завершения копии
+            new OnlineBackup(OnlineBackup.DEFAULT_PAGES_PER_STEP, 0)
+                    .backup(Paths.get("bank_database_pre_restore.db"), null);
         }
     }
 
-    // Автоматическое резервное копирование при запуске
+    // Автоматическое резервное копирование при запуске (в фоновом потоке, запуск не задерживается)
     public static void autoBackupOnStart() {
+        Thread thread = new Thread(DatabaseBackup::autoBackup, "auto-backup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void autoBackup() {
         try {
-            Path source = Paths.get("bank_database.db");
+            Path source = DatabaseConnection.getDatabasePath();
             if (!Files.exists(source) || Files.size(source) == 0) {
                 return; // БД пуста или не существует
             }
@@ -286,26 +412,29 @@ public class DatabaseBackup {
                 Files.createDirectories(autoBackupDir);
             }
 
-            // Имя файла с датой и временем
-            String timestamp = getCurrentTimestamp();
-            String backupFileName = "auto_backup_" + timestamp + ".db";
-            Path backupPath = autoBackupDir.resolve(backupFileName);
+            // Инкрементальная копия: пишутся только измененные фрагменты файла и манифест
+            IncrementalBackup backup = new IncrementalBackup(autoBackupDir);
+            backup.backup("auto_backup_" + getCurrentTimestamp());
 
-            // Копируем
-            Files.copy(source, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            // Копии дешевые, поэтому храним больше; фрагменты удаленных копий удаляются
+            backup.prune(AUTO_BACKUP_KEEP);
 
-            // Удаляем старые бэкапы (оставляем последние 5)
+            // Полные копии прежних версий (оставляем последние 5)
             cleanupOldBackups(autoBackupDir, 5);
 
         } catch (Exception e) {
             // Игнорируем ошибки авто-бэкапа
+        } finally {
+            // Поток завершается - его соединение больше не нужно
+            DatabaseConnection.releaseConnection();
         }
     }
 
     private static void cleanupOldBackups(Path backupDir, int keepCount) throws IOException {
         try (var stream = Files.list(backupDir)) {
             var backups = stream
-                    .filter(p -> p.getFileName().toString().startsWith("auto_backup_"))
+                    .filter(p -> p.getFileName().toString().startsWith("auto_backup_")
+                            && p.getFileName().toString().endsWith(".db"))
                     .sorted(Comparator.comparingLong(p -> {
                         try {
                             return Files.getLastModifiedTime(p).toMillis();
@@ -323,6 +452,7 @@ public class DatabaseBackup {
     }
 
     // Вспомогательные методы
+
     private static String getCurrentTimestamp() {
         return new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
     }
@@ -1,45 +1,502 @@
 package database;
 
+import models.Bank;
+import models.ClientType;
+import models.NameSearchIndex;
+import org.sqlite.Collation;
+import org.sqlite.Function;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+// Управление соединениями с БД: у каждого потока свое соединение (SQLite-соединение
+// нельзя без блокировок делить между потоками), у соединения - кэш подготовленных запросов.
+// Соединения не закрываются после каждого вызова DAO, а живут, пока жив их поток
+// (или до releaseConnection()/closeConnection()). Одновременно открыто не больше MAX_CONNECTIONS.
 public class DatabaseConnection {
-    private static final String URL = "jdbc:sqlite:bank_database.db";
-    private static Connection connection = null;
+    public static final int MAX_CONNECTIONS = 16;
+    // Сколько поток ждет, пока освободится соединение другого потока
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 10_000;
+    private static final long RECLAIM_INTERVAL_MILLIS = 100;
+
+    private static final String DEFAULT_URL = "jdbc:sqlite:bank_database.db";
+    private static final String URL_PREFIX = "jdbc:sqlite:";
+
+    // Файл БД можно переопределить: -Dbank.db.url=jdbc:sqlite:/путь/к/bank.db
+    private static volatile String url = System.getProperty("bank.db.url", DEFAULT_URL);
+    // Профиль хранения по умолчанию: -Dbank.db.profile=durable|balanced|bulk_load
+    private static volatile StorageProfile profile = StorageProfile.fromName(System.getProperty("bank.db.profile"));
+
+    private static final ThreadLocal<ManagedConnection> CURRENT = new ThreadLocal<>();
+    // Все открытые соединения, чтобы закрыть их при выходе или перед заменой файла БД
+    // и вернуть соединения завершившихся потоков
+    private static final Set<ManagedConnection> OPEN = ConcurrentHashMap.newKeySet();
+    // Разрешение на каждое открытое соединение из OPEN
+    private static final Semaphore PERMITS = new Semaphore(MAX_CONNECTIONS);
+    // Растет при closeConnection(): после него файл БД мог быть заменен (восстановление из копии)
+    private static volatile long generation;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseConnection::closeConnection, "db-shutdown"));
+    }
+
+    // Кэш выражений меняется потоком-владельцем, а закрывается и другими потоками
+    // (выход, замена файла БД, возврат соединения умершего потока) - поэтому под блокировкой соединения
+    private static final class ManagedConnection {
+        final Connection connection;
+        // Слабая ссылка: соединение не продлевает жизнь потока и освобождается после его завершения
+        final WeakReference<Thread> owner;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private boolean closed;
+        StorageProfile profile;
+        // Вложенность withProfile: пока > 0, профиль по умолчанию не применяется
+        int scopeDepth;
+
+        ManagedConnection(Connection connection, Thread owner) {
+            this.connection = connection;
+            this.owner = new WeakReference<>(owner);
+        }
+
+        synchronized PreparedStatement prepare(String sql) throws SQLException {
+            if (closed) {
+                throw new SQLException("Соединение с БД закрыто");
+            }
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        synchronized boolean isClosed() throws SQLException {
+            return closed || connection.isClosed();
+        }
 
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (PreparedStatement statement : statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // Соединение все равно закрывается ниже
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Соединение текущего потока. Закрывать его не нужно.
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(URL);
+        return current().connection;
+    }
+
+    // Подготовленный запрос из кэша соединения текущего потока (для постоянного SQL DAO).
+    // Закрывать его не нужно; параметры предыдущего вызова сбрасываются.
+    public static PreparedStatement prepare(String sql) throws SQLException {
+        return current().prepare(sql);
+    }
+
+    private static ManagedConnection current() throws SQLException {
+        ManagedConnection managed = CURRENT.get();
+        if (managed == null || managed.isClosed()) {
+            if (managed != null) {
+                release(managed);
+            }
+            managed = open();
+            CURRENT.set(managed);
+        } else if (managed.scopeDepth == 0 && managed.profile != profile && managed.connection.getAutoCommit()) {
+            // Профиль по умолчанию сменили - соединения потоков переходят на него при следующем обращении
+            managed.profile = profile;
+            profile.apply(managed.connection);
         }
-        return connection;
+        return managed;
     }
 
-    public static void initializeDatabase() {
-        String createTableSQL = """
+    // Новое соединение для текущего потока. Если открыто MAX_CONNECTIONS, сначала забираем
+    // соединения завершившихся потоков, затем ждем, пока освободится чье-нибудь еще.
+    private static ManagedConnection open() throws SQLException {
+        acquirePermit();
+        Connection connection = null;
+        try {
+            connection = DriverManager.getConnection(url);
+            registerFunctions(connection);
+            profile.applyOnOpen(connection);
+            ManagedConnection managed = new ManagedConnection(connection, Thread.currentThread());
+            managed.profile = profile;
+            OPEN.add(managed);
+            return managed;
+        } catch (SQLException | RuntimeException e) {
+            PERMITS.release();
+            if (connection != null) {
+                connection.close();
+            }
+            throw e;
+        }
+    }
+
+    private static void acquirePermit() throws SQLException {
+        reclaimAbandoned();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACQUIRE_TIMEOUT_MILLIS);
+        try {
+            while (!PERMITS.tryAcquire(RECLAIM_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                reclaimAbandoned();
+                if (System.nanoTime() > deadline) {
+                    throw new SQLException("Все " + MAX_CONNECTIONS + " соединений с БД заняты другими потоками");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения с БД прервано", e);
+        }
+    }
+
+    // Соединения потоков, которые уже завершились (фоновые задачи, SwingWorker, автокопия):
+    // пользоваться ими больше некому, закрываем и возвращаем разрешения
+    private static void reclaimAbandoned() {
+        for (ManagedConnection managed : OPEN) {
+            if (!managed.isOwnerAlive()) {
+                release(managed);
+            }
+        }
+    }
+
+    // Разрешение возвращается один раз - тем, кто убрал соединение из OPEN
+    private static void release(ManagedConnection managed) {
+        if (OPEN.remove(managed)) {
+            managed.close();
+            PERMITS.release();
+        }
+    }
+
+    // Данные, прочитанные при другом поколении, могут относиться к старому файлу БД
+    public static long getGeneration() {
+        return generation;
+    }
+
+    // Число открытых соединений (для проверки и диагностики)
+    public static int getOpenConnectionCount() {
+        return OPEN.size();
+    }
+
+    // Закрывает соединение текущего потока; следующее обращение откроет новое.
+    // Фоновые задачи могут вызывать его в конце, не дожидаясь завершения своего потока.
+    public static void releaseConnection() {
+        ManagedConnection managed = CURRENT.get();
+        if (managed != null) {
+            CURRENT.remove();
+            release(managed);
+        }
+    }
+
+    public static StorageProfile getStorageProfile() {
+        return profile;
+    }
+
+    public static void setStorageProfile(StorageProfile storageProfile) {
+        profile = storageProfile;
+    }
+
+    // Временный профиль для соединения текущего потока на время task (импорт, массовый пересчет):
+    // BatchResult result = DatabaseConnection.withProfile(StorageProfile.BULK_LOAD, () -> dao.saveAll(clients));
+    public static <T> T withProfile(StorageProfile scoped, SqlTask<T> task) throws SQLException {
+        ProfileScope scope = withProfile(scoped);
+        try {
+            return task.call();
+        } finally {
+            scope.close();
+        }
+    }
+
+    // То же в виде области для try-with-resources, если действие не укладывается в одну лямбду
+    public static ProfileScope withProfile(StorageProfile scoped) throws SQLException {
+        ManagedConnection managed = current();
+        StorageProfile previous = managed.profile;
+        if (scoped != previous) {
+            scoped.apply(managed.connection);
+            managed.profile = scoped;
+        }
+        managed.scopeDepth++;
+        return () -> {
+            managed.scopeDepth--;
+            if (managed.profile != previous && !managed.connection.isClosed()) {
+                previous.apply(managed.connection);
+                managed.profile = previous;
+            }
+        };
+    }
+
+    public interface ProfileScope extends AutoCloseable {
+        @Override
+        void close() throws SQLException;
+    }
+
+    public interface SqlTask<T> {
+        T call() throws SQLException;
+    }
+
+    // Перенос журнала WAL в основной файл, чтобы копия файла БД содержала все данные
+    public static void checkpoint() throws SQLException {
+        try (Statement stmt = getConnection().createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+    }
+
+    public static String getUrl() {
+        return url;
+    }
+
+    // Новая БД используется со следующего обращения в каждом потоке
+    public static void setUrl(String url) {
+        closeConnection();
+        DatabaseConnection.url = url;
+    }
+
+    // Путь к файлу БД (для резервного копирования)
+    public static Path getDatabasePath() {
+        String current = url;
+        return Paths.get(current.startsWith(URL_PREFIX) ? current.substring(URL_PREFIX.length()) : current);
+    }
+
+    // Сравнение без учета регистра для ORDER BY и индекса по ФИО, совпадает с Bank.TEXT_ORDER
+    public static final String UNICODE_NOCASE = "UNICODE_NOCASE";
+
+    // Встроенные lower(), LIKE и NOCASE в SQLite не учитывают регистр кириллицы,
+    // поэтому для поиска и сортировки по ФИО регистрируем сравнение и нормализацию из Java.
+    // Индекс idx_clients_name использует UNICODE_NOCASE: соединение, открытое не через этот класс,
+    // должно вызвать registerFunctions, иначе запись в clients завершится ошибкой "no such collation sequence".
+    public static void registerFunctions(Connection conn) throws SQLException {
+        Function.create(conn, "search_name", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(NameSearchIndex.normalize(value_text(0)));
+            }
+        });
+        Collation.create(conn, UNICODE_NOCASE, new Collation() {
+            @Override
+            protected int xCompare(String left, String right) {
+                return Bank.TEXT_ORDER.compare(left, right);
+            }
+        });
+    }
+
+    // Версия схемы хранится в PRAGMA user_version
+    // 1 - суммы в копейках (deposit_kopecks INTEGER) вместо deposit REAL
+    // 2 - вторичные индексы для фильтров, сортировки и агрегатов на стороне SQLite
+    // 3 - учет изменений: row_version строк, счетчик изменений и надгробия удаленных паспортов
+    // 4 - индекс по ФИО в порядке UNICODE_NOCASE (регистр кириллицы) вместо NOCASE
+    // 5 - таблица settings (ставки бонусов)
+    private static final int SCHEMA_VERSION = 5;
+
+    private static final String CREATE_NAME_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_clients_name ON clients (name COLLATE " + UNICODE_NOCASE + ", passport)";
+
+    // Ключи совпадают с ORDER BY в ClientDAO (вместе с passport - для постраничного чтения);
+    // индекс по типу содержит сумму, поэтому COUNT/SUM ... GROUP BY client_type читает только его
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_clients_type_deposit ON clients (client_type, deposit_kopecks)",
+            "CREATE INDEX IF NOT EXISTS idx_clients_deposit ON clients (deposit_kopecks, passport)",
+            CREATE_NAME_INDEX
+    };
+
+    private static final String CREATE_CLIENTS_TABLE = """
             CREATE TABLE IF NOT EXISTS clients (
                 passport TEXT PRIMARY KEY,
                 name TEXT NOT NULL,
-                deposit REAL NOT NULL,
+                deposit_kopecks INTEGER NOT NULL,
                 client_type TEXT NOT NULL,
                 bonus_type TEXT,
-                bonus_value REAL
+                bonus_value REAL,
+                row_version INTEGER NOT NULL DEFAULT 0
             )
             """;
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
+    // Каждое изменение строки получает следующий номер из change_counter (триггерами,
+    // поэтому учитываются и запросы в обход ClientDAO). Удаленный или смененный паспорт
+    // остается в client_tombstones с номером удаления. Строки до версии 3 имеют row_version = 0.
+    private static final String[] CREATE_CHANGE_TRACKING = {
+            "CREATE TABLE IF NOT EXISTS change_counter (id INTEGER PRIMARY KEY CHECK (id = 1), version INTEGER NOT NULL)",
+            "INSERT OR IGNORE INTO change_counter (id, version) VALUES (1, 0)",
+            "CREATE TABLE IF NOT EXISTS client_tombstones (passport TEXT PRIMARY KEY, row_version INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_clients_row_version ON clients (row_version)",
+            "CREATE INDEX IF NOT EXISTS idx_tombstones_row_version ON client_tombstones (row_version)",
+            """
+            CREATE TRIGGER IF NOT EXISTS clients_track_insert AFTER INSERT ON clients BEGIN
+                UPDATE change_counter SET version = version + 1 WHERE id = 1;
+                UPDATE clients SET row_version = (SELECT version FROM change_counter WHERE id = 1) WHERE rowid = NEW.rowid;
+                DELETE FROM client_tombstones WHERE passport = NEW.passport;
+            END""",
+            // Список столбцов не включает row_version: обновление номера не запускает триггер снова
+            """
+            CREATE TRIGGER IF NOT EXISTS clients_track_update
+            AFTER UPDATE OF passport, name, deposit_kopecks, client_type, bonus_type, bonus_value ON clients BEGIN
+                UPDATE change_counter SET version = version + 1 WHERE id = 1;
+                UPDATE clients SET row_version = (SELECT version FROM change_counter WHERE id = 1) WHERE rowid = NEW.rowid;
+                INSERT OR REPLACE INTO client_tombstones (passport, row_version)
+                    SELECT OLD.passport, version FROM change_counter WHERE id = 1 AND OLD.passport IS NOT NEW.passport;
+                DELETE FROM client_tombstones WHERE passport = NEW.passport AND OLD.passport IS NOT NEW.passport;
+            END""",
+            """
+            CREATE TRIGGER IF NOT EXISTS clients_track_delete AFTER DELETE ON clients BEGIN
+                UPDATE change_counter SET version = version + 1 WHERE id = 1;
+                INSERT OR REPLACE INTO client_tombstones (passport, row_version)
+                    SELECT OLD.passport, version FROM change_counter WHERE id = 1;
+            END"""
+    };
+
+    // Ставки, которые были до таблицы settings, не сохранялись. После полного пересчета
+    // их хранит каждая строка клиента - берем самую частую ставку среди строк своего типа.
+    private static final String[] CREATE_SETTINGS = {
+            "CREATE TABLE IF NOT EXISTS settings (key TEXT PRIMARY KEY, value TEXT NOT NULL)",
+            """
+            INSERT OR IGNORE INTO settings (key, value)
+            SELECT 'bonus.vip_percentage', bonus_value FROM clients
+            WHERE client_type = 'Вип' AND bonus_type = 'percentage' AND bonus_value >= 0
+            GROUP BY bonus_value ORDER BY COUNT(*) DESC LIMIT 1""",
+            """
+            INSERT OR IGNORE INTO settings (key, value)
+            SELECT 'bonus.pensioner_kopecks', CAST(ROUND(bonus_value * 100) AS INTEGER) FROM clients
+            WHERE client_type = 'Пенсионер' AND bonus_type = 'fixed' AND bonus_value >= 0
+            GROUP BY bonus_value ORDER BY COUNT(*) DESC LIMIT 1"""
+    };
+
+    public static void initializeDatabase() {
+        try {
+            Connection conn = getConnection();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_CLIENTS_TABLE);
+            }
+            migrateSchema(conn);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+    private static void migrateSchema(Connection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version >= SCHEMA_VERSION) {
+            return;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            if (version < 1 && hasColumn(conn, "clients", "deposit")) {
+                // Старые файлы: пересоздаем таблицу, переводя рубли (REAL) в копейки (INTEGER)
+                stmt.execute("ALTER TABLE clients RENAME TO clients_v0");
+                stmt.execute(CREATE_CLIENTS_TABLE);
+                stmt.execute("""
+                        INSERT INTO clients (passport, name, deposit_kopecks, client_type, bonus_type, bonus_value)
+                        SELECT passport, name, CAST(ROUND(deposit * 100) AS INTEGER), client_type, bonus_type, bonus_value
+                        FROM clients_v0
+                        """);
+                stmt.execute("DROP TABLE clients_v0");
+            }
+            if (version < 2) {
+                normalizeClientTypes(conn);
+                for (String sql : CREATE_INDEXES) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("ANALYZE clients");
+            }
+            if (version < 3) {
+                if (!hasColumn(conn, "clients", "row_version")) {
+                    stmt.execute("ALTER TABLE clients ADD COLUMN row_version INTEGER NOT NULL DEFAULT 0");
+                }
+                for (String sql : CREATE_CHANGE_TRACKING) {
+                    stmt.execute(sql);
+                }
+            }
+            if (version >= 2 && version < 4) {
+                // Индекс версий 2-3 построен по NOCASE и не подходит для нового порядка
+                stmt.execute("DROP INDEX IF EXISTS idx_clients_name");
+                stmt.execute(CREATE_NAME_INDEX);
             }
+            if (version < 5) {
+                for (String sql : CREATE_SETTINGS) {
+                    stmt.execute(sql);
+                }
+            }
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            conn.commit();
         } catch (SQLException e) {
-            e.printStackTrace();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Старые файлы могли хранить тип как "VIP" или "вип" - приводим к названиям ClientType,
+    // чтобы фильтр client_type = ? находил все строки по индексу
+    private static void normalizeClientTypes(Connection conn) throws SQLException {
+        List<String> stored = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT client_type FROM clients")) {
+            while (rs.next()) {
+                stored.add(rs.getString(1));
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE clients SET client_type = ? WHERE client_type = ?")) {
+            for (String title : stored) {
+                String canonical = ClientType.fromTitle(title).getTitle();
+                if (!canonical.equals(title)) {
+                    pstmt.setString(1, canonical);
+                    pstmt.setString(2, title);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Закрывает соединения всех потоков (при выходе и перед заменой файла БД).
+    // Поток, который в этот момент работает с БД, получит ошибку текущего запроса.
+    public static void closeConnection() {
+        generation++;
+        for (ManagedConnection managed : OPEN) {
+            release(managed);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package database;
+
+import models.Money;
+
+// Агрегаты по вкладам, посчитанные в SQLite (COUNT/SUM/MIN/MAX), суммы в копейках.
+// Среднее считается из суммы и количества, без округления REAL на стороне БД.
+public record DepositStatistics(int count, long totalKopecks, long minKopecks, long maxKopecks) {
+    public static final DepositStatistics EMPTY = new DepositStatistics(0, 0, 0, 0);
+
+    public long averageKopecks() {
+        return count == 0 ? 0 : Math.round((double) totalKopecks / count);
+    }
+
+    public double getTotal() {
+        return Money.toRubles(totalKopecks);
+    }
+
+    public double getAverage() {
+        return Money.toRubles(averageKopecks());
+    }
+
+    // Объединение двух групп (например, итог по всем типам)
+    public DepositStatistics merge(DepositStatistics other) {
+        if (count == 0) return other;
+        if (other.count == 0) return this;
+        return new DepositStatistics(count + other.count, totalKopecks + other.totalKopecks,
+                Math.min(minKopecks, other.minKopecks), Math.max(maxKopecks, other.maxKopecks));
+    }
+}
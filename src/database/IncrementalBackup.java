@@ -0,0 +1,332 @@
+package database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Инкрементальные резервные копии с дедупликацией. Файл БД режется на фрагменты
+// по CHUNK_SIZE байт (кратно размеру страницы SQLite), каждый уникальный фрагмент
+// хранится один раз в chunks/ под своим SHA-256, а копия - это манифест со списком фрагментов.
+// Неизмененные страницы между копиями не копируются, копия неизмененной БД - только манифест.
+//
+// Копия согласована: файлы читаются внутри транзакции чтения. В режиме WAL копируются
+// основной файл и журнал -wal; при восстановлении журнал применяется к файлу.
+public class IncrementalBackup {
+    // 1 МБ: кратно любому размеру страницы SQLite; манифест БД в 2 ГБ - около 150 КБ
+    public static final int CHUNK_SIZE = 1 << 20;
+    public static final String MANIFEST_SUFFIX = ".manifest";
+
+    private static final String FORMAT = "bank-incremental-backup 1";
+
+    private final Path directory;
+    private final Path chunks;
+
+    public record Result(Path manifest, int chunkCount, int newChunks, long newBytes, boolean unchanged,
+                         long elapsedNanos) {
+    }
+
+    private record Chunk(String hash, int length) {
+    }
+
+    // Размер и время изменения файла БД на момент копии - по ним неизмененная БД не перечитывается
+    private record Manifest(long dbSize, long dbModified, long walSize, List<Chunk> db, List<Chunk> wal) {
+    }
+
+    public IncrementalBackup(Path directory) {
+        this.directory = directory;
+        this.chunks = directory.resolve("chunks");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Новая копия текущей БД под именем name + MANIFEST_SUFFIX.
+    // Выполняется на соединении вызывающего потока, запись в БД других потоков не блокирует.
+    public Result backup(String name) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Files.createDirectories(chunks);
+
+        Path dbFile = DatabaseConnection.getDatabasePath();
+        Path walFile = Paths.get(dbFile + "-wal");
+        try {
+            // Перенос журнала в основной файл: тогда копируется только он (если БД не занята)
+            DatabaseConnection.checkpoint();
+        } catch (SQLException e) {
+            // Не удалось - журнал будет скопирован вместе с файлом
+        }
+
+        Path latest = latestManifest();
+        Manifest previous = latest != null ? readManifest(latest) : null;
+        Manifest current;
+        int[] written = new int[1];
+        long[] writtenBytes = new long[1];
+
+        Connection conn = DatabaseConnection.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            // Пока транзакция чтения открыта, контрольная точка не перенесет в основной файл
+            // ничего, кроме кадров журнала, которые и так попадут в копию вместе с -wal
+            beginRead();
+            long dbSize = Files.size(dbFile);
+            long dbModified = Files.getLastModifiedTime(dbFile).toMillis();
+            long walSize = Files.exists(walFile) ? Files.size(walFile) : 0;
+
+            if (previous != null && walSize == 0 && previous.walSize() == 0
+                    && previous.dbSize() == dbSize && previous.dbModified() == dbModified) {
+                current = previous;
+            } else {
+                List<Chunk> db = storeFile(dbFile, dbSize, written, writtenBytes);
+                List<Chunk> wal = walSize > 0 ? storeFile(walFile, walSize, written, writtenBytes) : List.of();
+                current = new Manifest(dbSize, dbModified, walSize, db, wal);
+            }
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
+        }
+
+        Path manifest = directory.resolve(name + MANIFEST_SUFFIX);
+        writeManifest(manifest, current);
+        return new Result(manifest, current.db().size() + current.wal().size(), written[0], writtenBytes[0],
+                current == previous, System.nanoTime() - start);
+    }
+
+    // Собирает копию из фрагментов в самостоятельный файл БД target (журнал применяется к нему).
+    // Каждый фрагмент проверяется по SHA-256.
+    public void restore(Path manifestFile, Path target) throws IOException, SQLException {
+        Manifest manifest = readManifest(manifestFile);
+        Path absolute = target.toAbsolutePath();
+        Path partial = Paths.get(absolute + ".part");
+        Path partialWal = Paths.get(partial + "-wal");
+        Files.deleteIfExists(partial);
+        Files.deleteIfExists(partialWal);
+        Files.deleteIfExists(Paths.get(partial + "-shm"));
+
+        try {
+            assemble(manifest.db(), partial);
+            if (!manifest.wal().isEmpty()) {
+                assemble(manifest.wal(), partialWal);
+                // SQLite восстанавливает журнал при открытии, контрольная точка переносит его в файл
+                try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + partial);
+                     Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                }
+            }
+        } catch (IOException | SQLException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        } finally {
+            Files.deleteIfExists(partialWal);
+            Files.deleteIfExists(Paths.get(partial + "-shm"));
+        }
+
+        Files.move(partial, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Манифесты по возрастанию имени (имена с датой - по времени создания)
+    public List<Path> listManifests() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(MANIFEST_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Оставляет keep последних копий и удаляет фрагменты, на которые больше никто не ссылается.
+    // Возвращает число удаленных фрагментов.
+    public int prune(int keep) throws IOException {
+        List<Path> manifests = listManifests();
+        for (int i = 0; i < manifests.size() - keep; i++) {
+            Files.deleteIfExists(manifests.get(i));
+        }
+        return collectGarbage();
+    }
+
+    public int collectGarbage() throws IOException {
+        Set<String> used = new HashSet<>();
+        for (Path manifest : listManifests()) {
+            Manifest parsed = readManifest(manifest);
+            parsed.db().forEach(chunk -> used.add(chunk.hash()));
+            parsed.wal().forEach(chunk -> used.add(chunk.hash()));
+        }
+
+        if (!Files.isDirectory(chunks)) {
+            return 0;
+        }
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(chunks)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (Files.isRegularFile(file) && !used.contains(fileName)) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private Path latestManifest() throws IOException {
+        List<Path> manifests = listManifests();
+        return manifests.isEmpty() ? null : manifests.get(manifests.size() - 1);
+    }
+
+    private static void beginRead() throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare("SELECT COUNT(*) FROM sqlite_master");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+        }
+    }
+
+    // Первые size байт файла: фрагменты, которых еще нет в хранилище, записываются
+    private List<Chunk> storeFile(Path file, long size, int[] written, long[] writtenBytes) throws IOException {
+        List<Chunk> result = new ArrayList<>();
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                buffer.clear();
+                buffer.limit((int) Math.min(CHUNK_SIZE, size - position));
+                readFully(channel, buffer, position);
+                buffer.flip();
+                int length = buffer.remaining();
+                if (length == 0) {
+                    break;
+                }
+
+                digest.update(buffer.array(), 0, length);
+                String hash = HexFormat.of().formatHex(digest.digest());
+                Path chunk = chunkPath(hash);
+                if (!Files.exists(chunk)) {
+                    // Через временный файл: оборванная запись не оставит фрагмент с чужим содержимым
+                    Files.createDirectories(chunk.getParent());
+                    Path temp = Paths.get(chunk + ".tmp");
+                    Files.write(temp, Arrays.copyOf(buffer.array(), length));
+                    Files.move(temp, chunk, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    written[0]++;
+                    writtenBytes[0] += length;
+                }
+                result.add(new Chunk(hash, length));
+                position += length;
+            }
+        }
+        return result;
+    }
+
+    // До заполнения буфера или конца файла
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    private void assemble(List<Chunk> parts, Path target) throws IOException {
+        MessageDigest digest = sha256();
+        try (OutputStream out = Files.newOutputStream(target)) {
+            for (Chunk chunk : parts) {
+                byte[] data;
+                try {
+                    data = Files.readAllBytes(chunkPath(chunk.hash()));
+                } catch (NoSuchFileException e) {
+                    throw new IOException("В хранилище копий нет фрагмента " + chunk.hash(), e);
+                }
+                if (data.length != chunk.length() || !HexFormat.of().formatHex(digest.digest(data)).equals(chunk.hash())) {
+                    throw new IOException("Фрагмент резервной копии поврежден: " + chunk.hash());
+                }
+                out.write(data);
+            }
+        }
+    }
+
+    private Path chunkPath(String hash) {
+        return chunks.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    // Текстовый формат: заголовок, параметры файла БД, затем строки "db|wal хэш длина" по порядку
+    private static void writeManifest(Path file, Manifest manifest) throws IOException {
+        StringBuilder text = new StringBuilder(FORMAT).append('\n');
+        text.append("dbSize ").append(manifest.dbSize()).append('\n');
+        text.append("dbModified ").append(manifest.dbModified()).append('\n');
+        text.append("walSize ").append(manifest.walSize()).append('\n');
+        for (Chunk chunk : manifest.db()) {
+            text.append("db ").append(chunk.hash()).append(' ').append(chunk.length()).append('\n');
+        }
+        for (Chunk chunk : manifest.wal()) {
+            text.append("wal ").append(chunk.hash()).append(' ').append(chunk.length()).append('\n');
+        }
+
+        Path temp = Paths.get(file + ".tmp");
+        Files.writeString(temp, text, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Manifest readManifest(Path file) throws IOException {
+        List<String> lines;
+        try (InputStream in = Files.newInputStream(file)) {
+            lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+        if (lines.isEmpty() || !lines.get(0).equals(FORMAT)) {
+            throw new IOException("Неизвестный формат манифеста: " + file.getFileName());
+        }
+
+        long dbSize = 0, dbModified = 0, walSize = 0;
+        List<Chunk> db = new ArrayList<>();
+        List<Chunk> wal = new ArrayList<>();
+        try {
+            for (String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split(" ");
+                switch (parts[0]) {
+                    case "dbSize" -> dbSize = Long.parseLong(parts[1]);
+                    case "dbModified" -> dbModified = Long.parseLong(parts[1]);
+                    case "walSize" -> walSize = Long.parseLong(parts[1]);
+                    case "db" -> db.add(new Chunk(parts[1], Integer.parseInt(parts[2])));
+                    case "wal" -> wal.add(new Chunk(parts[1], Integer.parseInt(parts[2])));
+                    default -> throw new IOException("Неизвестная строка манифеста: " + line);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Поврежден манифест: " + file.getFileName(), e);
+        }
+        return new Manifest(dbSize, dbModified, walSize, db, wal);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
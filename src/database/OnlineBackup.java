@@ -0,0 +1,112 @@
+package database;
+
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Копирование открытой БД через backup API SQLite (sqlite3_backup_step) вместо Files.copy.
+// Страницы копируются порциями с паузой между ними, поэтому запросы других потоков
+// не ждут конца копирования. Копия - согласованный снимок на момент начала: на время
+// копирования соединение держит транзакцию чтения, а запись идет дальше в журнал WAL.
+// Выполняется на соединении вызывающего потока - вызывать не из потока Swing.
+public class OnlineBackup {
+    // 256 страниц по 4 КБ - около 1 МБ за шаг
+    public static final int DEFAULT_PAGES_PER_STEP = 256;
+    public static final int DEFAULT_PAUSE_MILLIS = 5;
+
+    // Повторы шага, если БД занята
+    private static final int BUSY_SLEEP_MILLIS = 100;
+    private static final int BUSY_RETRIES = 50;
+
+    private final int pagesPerStep;
+    private final int pauseMillis;
+
+    public interface ProgressListener {
+        void onProgress(int copiedPages, int totalPages);
+    }
+
+    public record Result(Path file, int pages, long sizeBytes, long elapsedNanos) {
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : sizeBytes / (1024.0 * 1024.0) * 1e9 / elapsedNanos;
+        }
+    }
+
+    public OnlineBackup() {
+        this(DEFAULT_PAGES_PER_STEP, DEFAULT_PAUSE_MILLIS);
+    }
+
+    // pauseMillis == 0 - без паузы между шагами (быстрее, но сильнее мешает другим запросам)
+    public OnlineBackup(int pagesPerStep, int pauseMillis) {
+        if (pagesPerStep <= 0) throw new IllegalArgumentException("Число страниц за шаг должно быть больше 0");
+        if (pauseMillis < 0) throw new IllegalArgumentException("Пауза не может быть отрицательной");
+        this.pagesPerStep = pagesPerStep;
+        this.pauseMillis = pauseMillis;
+    }
+
+    // Копия пишется во временный файл рядом с target и переименовывается после успешного завершения,
+    // поэтому прерванное копирование не оставляет вместо target недописанный файл
+    public Result backup(Path target, ProgressListener listener) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Path absolute = target.toAbsolutePath();
+        Path partial = Paths.get(absolute + ".part");
+        Files.deleteIfExists(partial);
+
+        Connection conn = DatabaseConnection.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        int[] pages = new int[1];
+        conn.setAutoCommit(false);
+        try {
+            beginRead();
+            int rc = conn.unwrap(SQLiteConnection.class).getDatabase().backup("main", partial.toString(),
+                    (remaining, total) -> {
+                        pages[0] = total;
+                        if (listener != null) {
+                            listener.onProgress(total - remaining, total);
+                        }
+                        pause(remaining);
+                    },
+                    BUSY_SLEEP_MILLIS, BUSY_RETRIES, pagesPerStep);
+            if (rc != 0) {
+                throw new SQLException("Ошибка резервного копирования SQLite, код " + rc);
+            }
+        } catch (SQLException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        } finally {
+            // Конец транзакции чтения: журнал WAL снова можно переносить в основной файл
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
+        }
+
+        Files.move(partial, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Result(absolute, pages[0], Files.size(absolute), System.nanoTime() - start);
+    }
+
+    // Первое чтение фиксирует снимок БД, шаги копирования читают в той же транзакции
+    private static void beginRead() throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare("SELECT COUNT(*) FROM sqlite_master");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+        }
+    }
+
+    private void pause(int remaining) {
+        if (pauseMillis == 0 || remaining == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            // Прервать шаги из обратного вызова нельзя - копируем дальше без пауз
+            Thread.currentThread().interrupt();
+        }
+    }
+}
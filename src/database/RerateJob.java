@@ -0,0 +1,197 @@
+package database;
+
+import models.BonusRegistry;
+import models.BonusStrategy;
+import models.Client;
+import models.ClientType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Массовый пересчет вкладов после смены ставок в BonusRegistry.
+// Новые суммы считаются параллельно по частям снимка клиентов,
+// запись в БД идет пакетами, каждый пакет - отдельная транзакция.
+// Строка обновляется, только если ее вклад и тип в БД еще совпадают со снимком:
+// клиент, измененный во время пересчета, пропускается, и его правка не теряется.
+public class RerateJob {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // Меньшие части считаются в одном потоке
+    private static final int SPLIT_THRESHOLD = 8192;
+
+    private static final String UPDATE_SQL = "UPDATE clients SET deposit_kopecks = ?, bonus_type = ?, bonus_value = ?"
+            + " WHERE passport = ? AND deposit_kopecks = ? AND client_type = ?";
+
+    public interface ProgressListener {
+        void onProgress(int processed, int total);
+    }
+
+    // Записанные в БД пересчитанные клиенты (новые объекты), клиенты снимка, которых они заменяют
+    // (в том же порядке), число пропущенных из-за изменения строки в БД и время работы
+    public record Result(List<Client> clients, List<Client> replaced, int skipped, long elapsedNanos) {
+        public int count() {
+            return clients.size();
+        }
+
+        public double clientsPerSecond() {
+            return elapsedNanos > 0 ? clients.size() * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    public RerateJob() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    public RerateJob(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Размер пакета должен быть положительным");
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    // Пересчитываются клиенты, чья ставка отличается от текущей в реестре (сравнение по значению).
+    // snapshot не изменяется (снимок Bank.getAllClients(), взятый в потоке Bank),
+    // применить результат к Bank должен вызывающий код.
+    // При ошибке уже записанные пакеты остаются в БД; повторный запуск по
+    // перезагруженным данным досчитает остальное.
+    public Result run(List<Client> snapshot, ProgressListener listener) throws SQLException {
+        long start = System.nanoTime();
+
+        BonusStrategy[] targets = new BonusStrategy[ClientType.values().length];
+        for (ClientType type : ClientType.values()) {
+            targets[type.ordinal()] = BonusRegistry.forType(type);
+        }
+
+        List<Client> affected = new ArrayList<>();
+        for (Client client : snapshot) {
+            if (!client.getBonusStrategy().equals(targets[client.getClientType().ordinal()])) {
+                affected.add(client);
+            }
+        }
+
+        Client[] source = affected.toArray(new Client[0]);
+        Client[] result = new Client[source.length];
+        pool.invoke(new RerateTask(source, new long[source.length], result, targets, 0, source.length));
+
+        boolean[] written = write(source, result, listener);
+        List<Client> clients = new ArrayList<>(result.length);
+        List<Client> replaced = new ArrayList<>(result.length);
+        for (int i = 0; i < result.length; i++) {
+            if (written[i]) {
+                clients.add(result[i]);
+                replaced.add(source[i]);
+            }
+        }
+        return new Result(clients, replaced, result.length - clients.size(), System.nanoTime() - start);
+    }
+
+    // Возвращает, какие строки обновлены; остальные изменились в БД после снимка
+    private boolean[] write(Client[] source, Client[] clients, ProgressListener listener) throws SQLException {
+        if (clients.length == 0) {
+            if (listener != null) listener.onProgress(0, 0);
+            return new boolean[0];
+        }
+
+        // На время пересчета - профиль массовой записи
+        return DatabaseConnection.withProfile(StorageProfile.BULK_LOAD, () -> writeBatches(source, clients, listener));
+    }
+
+    private boolean[] writeBatches(Client[] source, Client[] clients, ProgressListener listener) throws SQLException {
+        boolean[] written = new boolean[clients.length];
+        Connection conn = DatabaseConnection.getConnection();
+        PreparedStatement pstmt = DatabaseConnection.prepare(UPDATE_SQL);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (int i = 0; i < clients.length; i++) {
+                Client client = clients[i];
+                BonusStrategy bonus = client.getBonusStrategy();
+                pstmt.setLong(1, client.getDepositKopecks());
+                pstmt.setString(2, bonus.getCode());
+                pstmt.setDouble(3, bonus.getValue());
+                pstmt.setString(4, client.getPassport());
+                pstmt.setLong(5, source[i].getDepositKopecks());
+                pstmt.setString(6, source[i].getType());
+                pstmt.addBatch();
+
+                if ((i + 1) % batchSize == 0 || i == clients.length - 1) {
+                    int[] counts = pstmt.executeBatch();
+                    conn.commit();
+                    // Запись в обход ClientDAO: кэши DAO сверятся с БД при следующем чтении
+                    ClientCache.noteLocalWrite();
+                    int first = i + 1 - counts.length;
+                    for (int j = 0; j < counts.length; j++) {
+                        written[first + j] = counts[j] > 0;
+                    }
+                    if (listener != null) listener.onProgress(i + 1, clients.length);
+                }
+            }
+        } catch (SQLException e) {
+            pstmt.clearBatch();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return written;
+    }
+
+    // Делит диапазон пополам до порога, затем считает его пакетно
+    private static class RerateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Client[] source;
+        private final long[] deposits;
+        private final Client[] result;
+        private final BonusStrategy[] targets;
+        private final int from;
+        private final int to;
+
+        RerateTask(Client[] source, long[] deposits, Client[] result, BonusStrategy[] targets, int from, int to) {
+            this.source = source;
+            this.deposits = deposits;
+            this.result = result;
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RerateTask(source, deposits, result, targets, from, middle),
+                        new RerateTask(source, deposits, result, targets, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                deposits[i] = source[i].getDepositKopecks();
+            }
+
+            // Подряд идущие клиенты с одной стратегией пересчитываются одним проходом
+            int start = from;
+            while (start < to) {
+                BonusStrategy old = source[start].getBonusStrategy();
+                int end = start + 1;
+                while (end < to && source[end].getBonusStrategy().equals(old)) {
+                    end++;
+                }
+                BonusRegistry.rerate(deposits, start, end, old, targets[source[start].getClientType().ordinal()]);
+                start = end;
+            }
+
+            for (int i = from; i < to; i++) {
+                Client client = source[i];
+                result[i] = client.getClientType().restoreClient(client.getName(), client.getPassport(), deposits[i],
+                        targets[client.getClientType().ordinal()]);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package database;
+
+import models.BonusRegistry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Настройки приложения в таблице settings (ключ - значение) той же БД, что и клиенты:
+// они попадают в резервные копии и восстанавливаются вместе с данными
+public class SettingsDAO {
+    public static final String VIP_PERCENTAGE = "bonus.vip_percentage";
+    public static final String PENSIONER_BONUS = "bonus.pensioner_kopecks";
+    // Надгробия с номером до этого включительно удалены (см. ClientDAO.pruneTombstones)
+    public static final String TOMBSTONES_PRUNED_THROUGH = "changes.tombstones_pruned_through";
+
+    private static final String SELECT_SQL = "SELECT value FROM settings WHERE key = ?";
+    private static final String UPSERT_SQL =
+            "INSERT INTO settings (key, value) VALUES (?, ?) ON CONFLICT(key) DO UPDATE SET value = excluded.value";
+
+    // null - настройки нет
+    public String get(String key) throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(SELECT_SQL);
+        pstmt.setString(1, key);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    public void put(String key, String value) throws SQLException {
+        PreparedStatement pstmt = DatabaseConnection.prepare(UPSERT_SQL);
+        pstmt.setString(1, key);
+        pstmt.setString(2, value);
+        pstmt.executeUpdate();
+    }
+
+    // Ставки из БД в BonusRegistry; без сохраненных ставок - значения по умолчанию
+    public void loadBonusRates() throws SQLException {
+        String vip = get(VIP_PERCENTAGE);
+        String pensioner = get(PENSIONER_BONUS);
+        try {
+            BonusRegistry.setVipPercentage(vip != null ? Double.parseDouble(vip) : BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+            BonusRegistry.setPensionerBonus(pensioner != null ? Long.parseLong(pensioner) : BonusRegistry.DEFAULT_PENSIONER_BONUS);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Неверная ставка бонуса в настройках: " + e.getMessage(), e);
+        }
+    }
+
+    // Обе ставки записываются одной транзакцией; BonusRegistry не меняется
+    public void saveBonusRates(double vipPercentage, long pensionerBonus) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            put(VIP_PERCENTAGE, Double.toString(vipPercentage));
+            put(PENSIONER_BONUS, Long.toString(pensionerBonus));
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
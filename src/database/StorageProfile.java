@@ -0,0 +1,61 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Настройки хранения SQLite для соединения. Во всех профилях журнал WAL:
+// читатели не блокируют писателя, а фиксация транзакции - дозапись в журнал.
+public enum StorageProfile {
+    // Каждая транзакция сбрасывается на диск до возврата из commit
+    DURABLE("WAL", "FULL", 2_000, 0, "DEFAULT"),
+    // При сбое питания могут потеряться последние транзакции, но файл остается целым
+    BALANCED("WAL", "NORMAL", 16_000, 64L << 20, "MEMORY"),
+    // Без fsync, с большим кэшем - для импорта и пересчета.
+    // Сбой ОС или питания во время записи может повредить файл
+    BULK_LOAD("WAL", "OFF", 64_000, 256L << 20, "MEMORY");
+
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSizeKib;
+    private final long mmapSize;
+    private final String tempStore;
+
+    StorageProfile(String journalMode, String synchronous, int cacheSizeKib, long mmapSize, String tempStore) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSizeKib = cacheSizeKib;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+    }
+
+    // Режим журнала меняется только вне транзакции, поэтому ставится при открытии соединения
+    void applyOnOpen(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+        }
+        apply(conn);
+    }
+
+    void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            // Отрицательное значение - размер в КиБ, а не в страницах
+            stmt.execute("PRAGMA cache_size = -" + cacheSizeKib);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    // Профиль по имени из настроек; неизвестное значение - BALANCED
+    public static StorageProfile fromName(String name) {
+        if (name != null) {
+            for (StorageProfile profile : values()) {
+                if (profile.name().equalsIgnoreCase(name.trim())) {
+                    return profile;
+                }
+            }
+        }
+        return BALANCED;
+    }
+}
@@ -0,0 +1,294 @@
+package database;
+
+import models.BankEvent;
+import models.BankListener;
+import models.Client;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Отложенная запись изменений Bank в БД. Изменения применяются в памяти сразу,
+// а фоновый поток копит их и пишет группой: несколько изменений одного паспорта
+// сливаются в одно (последнее состояние), группа пишется пакетными транзакциями.
+//
+// maxDelayMillis - сколько миллисекунд изменений может потеряться при падении процесса:
+// группа пишется не позже этого срока после первого изменения в ней.
+// 0 - запись сразу в вызывающем потоке (без отложенной записи).
+public class WriteBehindQueue implements BankListener, AutoCloseable {
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 50;
+    // Группа такого размера пишется, не дожидаясь срока
+    private static final int MAX_GROUP_SIZE = 5_000;
+    // Пауза перед повтором после ошибки записи
+    private static final long RETRY_DELAY_MILLIS = 1_000;
+
+    private final ClientDAO clientDAO;
+    private final long maxDelayMillis;
+    private final Thread writer;
+    private final Object writeLock = new Object();
+
+    // Паспорт -> последнее состояние (null - клиент удален); порядок - первое изменение
+    private final Map<String, Client> pending = new LinkedHashMap<>();
+    private long firstPendingAt;
+    private boolean flushRequested;
+    private boolean writing;
+    private boolean closed;
+    private int muted;
+
+    private long writtenChanges;
+    private long writtenGroups;
+    private long coalescedChanges;
+    private SQLException lastError;
+    // Запись сейчас не удается (для уведомления только о начале и конце сбоя)
+    private boolean failing;
+    private volatile Consumer<SQLException> errorListener;
+
+    public WriteBehindQueue(ClientDAO clientDAO) {
+        this(clientDAO, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public WriteBehindQueue(ClientDAO clientDAO, long maxDelayMillis) {
+        if (maxDelayMillis < 0) throw new IllegalArgumentException("Задержка не может быть отрицательной");
+        this.clientDAO = clientDAO;
+        this.maxDelayMillis = maxDelayMillis;
+        if (maxDelayMillis > 0) {
+            writer = new Thread(this::writeLoop, "write-behind");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    @Override
+    public void bankChanged(List<BankEvent> events) {
+        boolean writeNow;
+        synchronized (this) {
+            if (muted > 0) {
+                return;
+            }
+            // После close() фонового потока нет - пишем сразу
+            writeNow = writer == null || closed;
+            for (BankEvent event : events) {
+                String passport = event.getPassport();
+                if (pending.containsKey(passport)) {
+                    coalescedChanges++;
+                }
+                if (pending.isEmpty()) {
+                    firstPendingAt = System.currentTimeMillis();
+                }
+                pending.put(passport, event.newClient());
+            }
+            notifyAll();
+        }
+        if (writeNow) {
+            writeGroup();
+        }
+    }
+
+    // Изменения, которые вызывающий код уже записал в БД сам (импорт, пересчет):
+    // сначала дописываем очередь, затем выполняем action без постановки его событий в очередь
+    public void runPersisted(Runnable action) {
+        flush();
+        synchronized (this) {
+            muted++;
+        }
+        try {
+            action.run();
+        } finally {
+            synchronized (this) {
+                muted--;
+            }
+        }
+    }
+
+    // Блокирует, пока все изменения, поставленные до вызова, не будут записаны.
+    // Возвращает false, если запись завершилась ошибкой (изменения остаются в очереди).
+    public boolean flush() {
+        boolean direct;
+        synchronized (this) {
+            direct = writer == null || closed || Thread.currentThread() == writer;
+        }
+        if (direct) {
+            return writeGroup();
+        }
+        synchronized (this) {
+            flushRequested = true;
+            lastError = null;
+            notifyAll();
+            try {
+                while ((!pending.isEmpty() || writing) && lastError == null) {
+                    wait(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            flushRequested = false;
+            return pending.isEmpty();
+        }
+    }
+
+    // Дописывает очередь и останавливает фоновый поток; вызывать при выходе из приложения.
+    // Ошибки записи надо разобрать до close(): flush() и, если пользователь согласен, discard()
+    @Override
+    public void close() {
+        if (!flush()) {
+            System.err.println("Не записаны в БД изменений: " + getPendingCount());
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Отбрасывает изменения, которые не удалось записать (выход без сохранения,
+    // восстановление БД из копии). Возвращает число отброшенных изменений.
+    public int discard() {
+        // Под writeLock: группа, которая пишется сейчас, не вернется в очередь после отбрасывания
+        synchronized (writeLock) {
+            synchronized (this) {
+                int discarded = pending.size();
+                pending.clear();
+                lastError = null;
+                notifyAll();
+                return discarded;
+            }
+        }
+    }
+
+    // Вызывается в фоновом потоке записи: с ошибкой, когда запись перестала удаваться,
+    // и с null, когда она снова прошла успешно
+    public void setErrorListener(Consumer<SQLException> listener) {
+        this.errorListener = listener;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getWrittenChanges() {
+        return writtenChanges;
+    }
+
+    public synchronized long getWrittenGroups() {
+        return writtenGroups;
+    }
+
+    // Изменения, поглощенные более поздними изменениями того же паспорта
+    public synchronized long getCoalescedChanges() {
+        return coalescedChanges;
+    }
+
+    public synchronized SQLException getLastError() {
+        return lastError;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!closed && !dueLocked()) {
+                        long wait = pending.isEmpty() ? 0 : firstPendingAt + maxDelayMillis - System.currentTimeMillis();
+                        wait(Math.max(wait, pending.isEmpty() ? 0 : 1));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed && pending.isEmpty()) {
+                    return;
+                }
+            }
+
+            if (!writeGroup()) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean dueLocked() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        return flushRequested || pending.size() >= MAX_GROUP_SIZE
+                || System.currentTimeMillis() - firstPendingAt >= maxDelayMillis;
+    }
+
+    // Забирает все накопленные изменения и пишет их. При ошибке не перезаписанные
+    // с тех пор изменения возвращаются в очередь для повтора.
+    private boolean writeGroup() {
+        // Группы пишутся строго по очереди, иначе более старая группа могла бы записаться позже новой
+        synchronized (writeLock) {
+            return writeGroupLocked();
+        }
+    }
+
+    private boolean writeGroupLocked() {
+        Map<String, Client> group;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return true;
+            }
+            group = new LinkedHashMap<>(pending);
+            pending.clear();
+            writing = true;
+        }
+
+        List<Client> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        for (Map.Entry<String, Client> entry : group.entrySet()) {
+            if (entry.getValue() != null) {
+                upserts.add(entry.getValue());
+            } else {
+                deletes.add(entry.getKey());
+            }
+        }
+
+        // Паспорта в двух списках не пересекаются, поэтому порядок записи не важен
+        BatchResult upserted = clientDAO.upsertAll(upserts);
+        BatchResult deleted = upserted.isComplete() ? clientDAO.deleteAll(deletes) : null;
+        SQLException error = upserted.isComplete() ? deleted.getError() : upserted.getError();
+
+        boolean changed;
+        synchronized (this) {
+            writing = false;
+            changed = failing != (error != null);
+            failing = error != null;
+            if (error == null) {
+                writtenChanges += group.size();
+                writtenGroups++;
+                lastError = null;
+            } else {
+                // Повторно пишем всю группу: записанные пакеты upsert/delete идемпотентны
+                lastError = error;
+                System.err.println("Ошибка отложенной записи в БД: " + error.getMessage());
+                if (pending.isEmpty()) {
+                    firstPendingAt = System.currentTimeMillis();
+                }
+                for (Map.Entry<String, Client> entry : group.entrySet()) {
+                    pending.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            notifyAll();
+        }
+        Consumer<SQLException> listener = errorListener;
+        if (changed && listener != null) {
+            listener.accept(error);
+        }
+        return error == null;
+    }
+}
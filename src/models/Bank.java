@@ -1,41 +1,195 @@
 package models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 
 public class Bank {
-    private List<Client> clients = new ArrayList<>();
+    // Индекс по паспорту: O(1) поиск, обновление и удаление, порядок добавления сохраняется
+    private Map<String, Client> clients = new LinkedHashMap<>();
 
-    public void addClient(String name, double deposit, String passport, String clientType) {
+    // Агрегаты, поддерживаемые при каждом изменении (чтение за O(1)); суммы точные, в копейках
+    private long totalDeposits = 0;
+    private final int[] countByType = new int[ClientType.values().length];
+    private final long[] depositsByType = new long[ClientType.values().length];
+    // Порядковые статистики по вкладам: минимум, максимум, перцентили, диапазоны
+    private final DepositIndex depositIndex = new DepositIndex();
+
+    // Сравнение строк без учета регистра (в том числе кириллицы). В SQLite то же сравнение
+    // зарегистрировано как UNICODE_NOCASE, поэтому страницы Bank и ClientDAO идут в одном порядке.
+    public static final Comparator<String> TEXT_ORDER = String.CASE_INSENSITIVE_ORDER;
+
+    // Постоянно упорядоченные индексы; паспорт в конце сравнения делает ключи уникальными
+    private static final Comparator<Client> BY_NAME = Comparator
+            .comparing(Client::getName, TEXT_ORDER)
+            .thenComparing(Client::getPassport);
+    private static final Comparator<Client> BY_DEPOSIT = Comparator
+            .comparingLong(Client::getDepositKopecks)
+            .thenComparing(Client::getPassport);
+    private static final Comparator<Client> BY_TYPE = Comparator
+            .comparing(Client::getType, TEXT_ORDER)
+            .thenComparing(Client::getPassport);
+
+    private final TreeSet<Client> byName = new TreeSet<>(BY_NAME);
+    private final TreeSet<Client> byDeposit = new TreeSet<>(BY_DEPOSIT);
+    private final TreeSet<Client> byType = new TreeSet<>(BY_TYPE);
+
+    // Текущий порядок отображения - только выбор индекса, без пересортировки
+    private SortOrder sortOrder = SortOrder.INSERTION;
+
+    // Поиск по ФИО (префиксы и вхождения), обновляется вместе с остальными индексами
+    private final NameSearchIndex nameIndex = new NameSearchIndex();
+
+    // Версия данных и снимок для чтения, общий для всех читателей до следующего изменения
+    private long version = 0;
+    private List<Client> snapshot = null;
+
+    // Подписчики на изменения и события, накопленные внутри пакета (по паспорту)
+    private final List<BankListener> listeners = new ArrayList<>();
+    private final Map<String, BankEvent> pendingEvents = new LinkedHashMap<>();
+    private int batchDepth = 0;
+
+    // Сумма вклада в копейках. false - клиент с таким паспортом уже есть
+    public boolean addClient(String name, long deposit, String passport, String clientType) {
         Client client = createClient(name, deposit, passport, clientType.toLowerCase());
-        clients.add(client);
+        return addClient(client);
     }
 
-    public void addClient(Client client) {
-        clients.add(client);
+    // Паспорт уникален: существующий клиент не заменяется (для изменения - updateClient)
+    public boolean addClient(Client client) {
+        if (clients.putIfAbsent(client.getPassport(), client) != null) {
+            return false;
+        }
+        track(client);
+        fire(BankEvent.added(client));
+        return true;
     }
 
     public void removeClient(String passport) {
-        clients.removeIf(client -> client.getPassport().equals(passport));
+        Client removed = clients.remove(passport);
+        if (removed != null) {
+            untrack(removed);
+            fire(BankEvent.removed(removed));
+        }
     }
 
-    public void updateClient(String passport, Client updatedClient) {
-        for (int i = 0; i < clients.size(); i++) {
-            if (clients.get(i).getPassport().equals(passport)) {
-                clients.set(i, updatedClient);
-                break;
+    // Клиент остается на своем месте в порядке добавления.
+    // false - клиента нет или новый паспорт уже принадлежит другому клиенту.
+    public boolean updateClient(String passport, Client updatedClient) {
+        Client oldClient = clients.get(passport);
+        if (oldClient == null) {
+            return false;
+        }
+        boolean samePassport = passport.equals(updatedClient.getPassport());
+        if (!samePassport && clients.containsKey(updatedClient.getPassport())) {
+            return false;
+        }
+
+        if (samePassport) {
+            // Замена значения существующего ключа не меняет порядок LinkedHashMap
+            clients.put(passport, updatedClient);
+        } else {
+            renameKey(passport, updatedClient);
+        }
+
+        untrack(oldClient);
+        track(updatedClient);
+
+        if (samePassport) {
+            fire(BankEvent.updated(oldClient, updatedClient));
+        } else {
+            // Для подписчиков смена паспорта - удаление старой записи и добавление новой,
+            // одним списком: по нему видно, что клиент остался на прежнем месте
+            beginBatch();
+            try {
+                fire(BankEvent.removed(oldClient));
+                fire(BankEvent.added(updatedClient));
+            } finally {
+                endBatch();
             }
         }
+        return true;
+    }
+
+    // Ключ LinkedHashMap нельзя заменить на месте, поэтому карта перестраивается за O(n).
+    // Смена паспорта - редкая ручная правка, а порядок добавления виден в таблице.
+    private void renameKey(String passport, Client updatedClient) {
+        Map<String, Client> renamed = new LinkedHashMap<>(clients.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Client> entry : clients.entrySet()) {
+            if (entry.getKey().equals(passport)) {
+                renamed.put(updatedClient.getPassport(), updatedClient);
+            } else {
+                renamed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        clients = renamed;
     }
 
     public Client getClientByPassport(String passport) {
-        return clients.stream()
-                .filter(client -> client.getPassport().equals(passport))
-                .findFirst()
-                .orElse(null);
+        return clients.get(passport);
+    }
+
+    public void addListener(BankListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BankListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Пакет изменений: события копятся до парного endBatch() и доставляются одним списком,
+    // последовательные изменения одного паспорта объединяются (добавление + удаление исчезают).
+    // Пакеты могут быть вложенными, доставка - при закрытии внешнего.
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    public void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("Пакет изменений не был начат");
+        }
+        if (--batchDepth == 0 && !pendingEvents.isEmpty()) {
+            List<BankEvent> events = List.copyOf(pendingEvents.values());
+            pendingEvents.clear();
+            deliver(events);
+        }
+    }
+
+    private void fire(BankEvent event) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (batchDepth == 0) {
+            deliver(List.of(event));
+            return;
+        }
+
+        // Событие остается на месте первого изменения паспорта в пакете
+        String passport = event.getPassport();
+        BankEvent previous = pendingEvents.get(passport);
+        BankEvent merged = previous != null ? BankEvent.merge(previous, event) : event;
+        if (merged != null) {
+            pendingEvents.put(passport, merged);
+        } else {
+            pendingEvents.remove(passport);
+        }
+    }
+
+    private void deliver(List<BankEvent> events) {
+        // Копия списка: подписчик может отписаться во время доставки
+        for (BankListener listener : List.copyOf(listeners)) {
+            listener.bankChanged(events);
+        }
     }
 
-    private Client createClient(String name, double deposit, String passport, String type) {
+    private Client createClient(String name, long deposit, String passport, String type) {
         return switch (type) {
             case "regular", "обычный", "обычный клиент" -> new SimpleClient(name, passport, deposit);
             case "pensioner", "пенсионер" -> new PensionerClient(name, passport, deposit);
@@ -44,27 +198,198 @@ public class Bank {
         };
     }
 
+    // Клиенты не должны изменяться в обход Bank, иначе агрегаты и индексы разойдутся с данными
+    private void track(Client client) {
+        invalidateSnapshot();
+        int type = client.getClientType().ordinal();
+        long deposit = client.getDepositKopecks();
+
+        totalDeposits += deposit;
+        countByType[type]++;
+        depositsByType[type] += deposit;
+        depositIndex.add(deposit);
+
+        byName.add(client);
+        byDeposit.add(client);
+        byType.add(client);
+        nameIndex.add(client);
+    }
+
+    private void untrack(Client client) {
+        invalidateSnapshot();
+        int type = client.getClientType().ordinal();
+        long deposit = client.getDepositKopecks();
+
+        totalDeposits -= deposit;
+        countByType[type]--;
+        depositsByType[type] -= deposit;
+        depositIndex.remove(deposit);
+
+        byName.remove(client);
+        byDeposit.remove(client);
+        byType.remove(client);
+        nameIndex.remove(client);
+    }
+
+    // Первые limit клиентов, чье ФИО содержит запрос (без учета регистра и "ё")
+    public List<Client> searchByName(String query, int limit) {
+        return nameIndex.search(query, limit);
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    // Методы с double возвращают рубли для отображения, с Kopecks - точные суммы
     public double getTotalDeposits() {
-        double total = 0;
-        for (Client client : clients) {
-            total += client.getDeposit();
+        return Money.toRubles(totalDeposits);
+    }
+
+    public long getTotalDepositsKopecks() {
+        return totalDeposits;
+    }
+
+    public double getAverageDeposit() {
+        return clients.isEmpty() ? 0 : Money.toRubles(totalDeposits) / clients.size();
+    }
+
+    public int getClientCount(ClientType type) {
+        return countByType[type.ordinal()];
+    }
+
+    public double getTotalDeposits(ClientType type) {
+        return Money.toRubles(depositsByType[type.ordinal()]);
+    }
+
+    public long getTotalDepositsKopecks(ClientType type) {
+        return depositsByType[type.ordinal()];
+    }
+
+    public double getMinDeposit() {
+        return clients.isEmpty() ? 0 : Money.toRubles(depositIndex.select(0));
+    }
+
+    public double getMaxDeposit() {
+        return clients.isEmpty() ? 0 : Money.toRubles(depositIndex.select(depositIndex.size() - 1));
+    }
+
+    // Аналитика по распределению вкладов, каждый запрос за O(log n)
+
+    // Количество клиентов с вкладом строго меньше amount
+    public int getDepositRank(double amount) {
+        return depositIndex.countLess(Money.fromRubles(amount));
+    }
+
+    // Количество клиентов с вкладом от min до max включительно
+    public int countClientsWithDepositBetween(double min, double max) {
+        if (min > max) {
+            return 0;
+        }
+        return depositIndex.countLessOrEqual(Money.fromRubles(max)) - depositIndex.countLess(Money.fromRubles(min));
+    }
+
+    // Перцентиль (0-100) по методу ближайшего ранга: p90 - сумма, не превышаемая у 90% клиентов
+    public double getDepositPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Перцентиль должен быть от 0 до 100");
+        }
+        int count = depositIndex.size();
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return Money.toRubles(depositIndex.select(Math.max(rank, 1) - 1));
+    }
+
+    public double getMedianDeposit() {
+        int count = depositIndex.size();
+        if (count == 0) {
+            return 0;
         }
-        return total;
+        return Money.toRubles(depositIndex.select((count - 1) / 2) + depositIndex.select(count / 2)) / 2;
     }
 
+    // Неизменяемый снимок клиентов в текущем порядке сортировки: массив строится один раз
+    // после изменения и разделяется всеми читателями до следующего. Снимок не меняется
+    // вместе с Bank - его можно хранить и передавать в другой поток без копирования.
     public List<Client> getAllClients() {
-        return new ArrayList<>(clients);
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableList(Arrays.asList(sortedView(sortOrder).toArray(new Client[0])));
+        }
+        return snapshot;
+    }
+
+    // Увеличивается при каждом изменении данных или порядка
+    public long getVersion() {
+        return version;
+    }
+
+    private void invalidateSnapshot() {
+        version++;
+        snapshot = null;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public void setSortOrder(SortOrder sortOrder) {
+        if (this.sortOrder != sortOrder) {
+            this.sortOrder = sortOrder;
+            invalidateSnapshot();
+        }
     }
 
     public void sortByName() {
-        clients.sort((c1, c2) -> c1.getName().compareToIgnoreCase(c2.getName()));
+        setSortOrder(SortOrder.NAME);
     }
 
     public void sortByDeposit() {
-        clients.sort((c1, c2) -> Double.compare(c1.getDeposit(), c2.getDeposit()));
+        setSortOrder(SortOrder.DEPOSIT);
     }
 
     public void sortByType() {
-        clients.sort((c1, c2) -> c1.getType().compareToIgnoreCase(c2.getType()));
+        setSortOrder(SortOrder.TYPE);
+    }
+
+    // Постраничное чтение по ключу: до limit клиентов, следующих за after в порядке order.
+    // after == null - первая страница; after может уже отсутствовать в банке.
+    public List<Client> getClientsPage(SortOrder order, Client after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше 0");
+        }
+
+        NavigableSet<Client> index = switch (order) {
+            case NAME -> byName;
+            case DEPOSIT -> byDeposit;
+            case TYPE -> byType;
+            case INSERTION -> throw new IllegalArgumentException("Постраничное чтение требует упорядоченного индекса");
+        };
+
+        List<Client> page = new ArrayList<>(Math.min(limit, index.size()));
+        for (Client client : after == null ? index : index.tailSet(after, false)) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(client);
+        }
+        return page;
+    }
+
+    public List<Client> getClientsPage(SortOrder order, String afterPassport, int limit) {
+        Client after = afterPassport == null ? null : getClientByPassport(afterPassport);
+        if (afterPassport != null && after == null) {
+            throw new IllegalArgumentException("Клиент не найден: " + afterPassport);
+        }
+        return getClientsPage(order, after, limit);
+    }
+
+    private Collection<Client> sortedView(SortOrder order) {
+        return switch (order) {
+            case INSERTION -> clients.values();
+            case NAME -> byName;
+            case DEPOSIT -> byDeposit;
+            case TYPE -> byType;
+        };
     }
-}
\ No newline at end of file
+}
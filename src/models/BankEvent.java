@@ -0,0 +1,35 @@
+package models;
+
+// Изменение в Bank: для добавления oldClient == null, для удаления newClient == null
+public record BankEvent(Type type, Client oldClient, Client newClient) {
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    public static BankEvent added(Client client) {
+        return new BankEvent(Type.ADDED, null, client);
+    }
+
+    public static BankEvent updated(Client oldClient, Client newClient) {
+        return new BankEvent(Type.UPDATED, oldClient, newClient);
+    }
+
+    public static BankEvent removed(Client client) {
+        return new BankEvent(Type.REMOVED, client, null);
+    }
+
+    public String getPassport() {
+        return newClient != null ? newClient.getPassport() : oldClient.getPassport();
+    }
+
+    // Объединение двух последовательных изменений одного паспорта; null - изменений не осталось
+    static BankEvent merge(BankEvent first, BankEvent next) {
+        return switch (first.type) {
+            case ADDED -> next.type == Type.REMOVED ? null : added(next.newClient);
+            case UPDATED -> next.type == Type.REMOVED ? removed(first.oldClient) : updated(first.oldClient, next.newClient);
+            case REMOVED -> next.type == Type.REMOVED ? first : updated(first.oldClient, next.newClient);
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package models;
+
+import java.util.List;
+
+// Получает изменения Bank уже после их применения.
+// Вне пакета изменений список содержит одно событие, в пакете - по одному на паспорт.
+public interface BankListener {
+    void bankChanged(List<BankEvent> events);
+}
@@ -0,0 +1,91 @@
+package models;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Общие неизменяемые стратегии бонусов по типам клиентов.
+// Клиенты одного типа разделяют один экземпляр; смена ставки заменяет экземпляр,
+// а уже созданные клиенты сохраняют стратегию, по которой им был начислен бонус.
+// Ставки хранятся в БД (database.SettingsDAO) и загружаются при открытии БД.
+public final class BonusRegistry {
+    public static final double DEFAULT_VIP_PERCENTAGE = 0.1;
+    public static final long DEFAULT_PENSIONER_BONUS = 300_000; // 3000 руб.
+
+    private static final BonusStrategy NONE = new NoBonus();
+
+    private static volatile PercentageBonus vipBonus = new PercentageBonus(DEFAULT_VIP_PERCENTAGE);
+    private static volatile FixedBonus pensionerBonus = new FixedBonus(DEFAULT_PENSIONER_BONUS);
+
+    // Стратегии по прежним ставкам, восстановленные из БД: по одному экземпляру на значение
+    private static final Map<BonusStrategy, BonusStrategy> STORED = new ConcurrentHashMap<>();
+
+    private BonusRegistry() {
+    }
+
+    public static BonusStrategy forType(ClientType type) {
+        return switch (type) {
+            case VIP -> vipBonus;
+            case PENSIONER -> pensionerBonus;
+            case REGULAR -> NONE;
+        };
+    }
+
+    public static double getVipPercentage() {
+        return vipBonus.getPercentage();
+    }
+
+    // Доля от вклада: 0.1 - это 10%. Та же ставка сохраняет прежний экземпляр.
+    public static void setVipPercentage(double percentage) {
+        PercentageBonus bonus = new PercentageBonus(percentage);
+        if (!bonus.equals(vipBonus)) {
+            vipBonus = bonus;
+        }
+    }
+
+    public static long getPensionerBonus() {
+        return pensionerBonus.getAmount();
+    }
+
+    // Сумма в копейках
+    public static void setPensionerBonus(long amount) {
+        FixedBonus bonus = new FixedBonus(amount);
+        if (!bonus.equals(pensionerBonus)) {
+            pensionerBonus = bonus;
+        }
+    }
+
+    // Стратегия клиента по сохраненным bonus_type и bonus_value (BonusStrategy.getCode/getValue).
+    // Совпадающая с текущей ставкой - общий экземпляр реестра, прежняя ставка - общий экземпляр
+    // для этого значения. Без сохраненного кода (строки старых версий) - текущая стратегия типа.
+    public static BonusStrategy restore(ClientType type, String code, double value) {
+        BonusStrategy current = forType(type);
+        BonusStrategy stored = fromCode(code, value);
+        if (stored == null || stored.equals(current)) {
+            return current;
+        }
+        BonusStrategy shared = STORED.putIfAbsent(stored, stored);
+        return shared != null ? shared : stored;
+    }
+
+    private static BonusStrategy fromCode(String code, double value) {
+        if (code == null || value < 0) {
+            return null;
+        }
+        return switch (code) {
+            case "percentage" -> new PercentageBonus(value);
+            case "fixed" -> new FixedBonus(Money.fromRubles(value));
+            case "none" -> NONE;
+            default -> null;
+        };
+    }
+
+    // Пересчет вкладов при смене ставки: снимаем старый бонус и начисляем новый.
+    // Два плотных прохода по массиву вместо вызова стратегии для каждого клиента.
+    public static void rerate(long[] deposits, int from, int to, BonusStrategy oldStrategy, BonusStrategy newStrategy) {
+        if (oldStrategy.equals(newStrategy)) {
+            return;
+        }
+        oldStrategy.baseDeposits(deposits, deposits, from, to);
+        newStrategy.applyBonuses(deposits, deposits, from, to);
+    }
+}
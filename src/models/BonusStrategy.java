@@ -1,6 +1,32 @@
 package models;
 
 public interface BonusStrategy {
-    double calculateBonus(double initialDeposit);
+    // Суммы в копейках
+    long calculateBonus(long initialDeposit);
     String getDescription();
+
+    // Код и параметр для хранения в БД (bonus_type, bonus_value)
+    String getCode();
+    double getValue();
+
+    // Подробное описание для таблицы и формы ("10% от суммы вклада")
+    String getDetails();
+
+    // Обратная операция: первоначальный вклад по сумме с уже начисленным бонусом
+    long baseDeposit(long depositWithBonus);
+
+    // Пакетный расчет: result[i] = deposits[i] + бонус, для i из [from, to).
+    // Массивы могут совпадать - расчет идет поэлементно.
+    default void applyBonuses(long[] deposits, long[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = deposits[i] + calculateBonus(deposits[i]);
+        }
+    }
+
+    // Пакетная обратная операция: result[i] = baseDeposit(deposits[i])
+    default void baseDeposits(long[] deposits, long[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = baseDeposit(deposits[i]);
+        }
+    }
 }
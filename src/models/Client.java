@@ -3,10 +3,10 @@ package models;
 public abstract class Client {
     private final String name;
     private String passport;
-    private double deposit;
+    private long deposit; // в копейках
     private BonusStrategy bonusStrategy;
 
-    protected Client(String name, double initialDeposit, String passport, BonusStrategy strategy) {
+    protected Client(String name, long initialDeposit, String passport, BonusStrategy strategy) {
         if (initialDeposit < 0) throw new IllegalArgumentException("Вклад не может быть отрицательным");
         this.passport = passport;
         this.name = name;
@@ -16,23 +16,34 @@ public abstract class Client {
 
     public abstract String getType();
 
+    public abstract ClientType getClientType();
+
     public String getPassport() { return passport; }
     public void setPassport(String passport) { this.passport = passport; }
 
-    public double getDeposit() { return deposit; }
-    public void setDeposit(double deposit) { this.deposit = deposit; }
+    // Сумма в рублях для отображения; расчеты ведутся в копейках
+    public double getDeposit() { return Money.toRubles(deposit); }
+    public long getDepositKopecks() { return deposit; }
+    public void setDepositKopecks(long deposit) { this.deposit = deposit; }
 
     public String getName() { return name; }
 
     public BonusStrategy getBonusStrategy() { return bonusStrategy; }
     public void setBonusStrategy(BonusStrategy strategy) {
+        // Снимаем бонус прежней стратегии и начисляем новый на первоначальный вклад
+        long base = this.bonusStrategy.baseDeposit(this.deposit);
+        this.deposit = base + strategy.calculateBonus(base);
+        this.bonusStrategy = strategy;
+    }
+
+    // Состояние из хранилища: сумма уже содержит бонус стратегии, по которой он был начислен
+    void restore(long deposit, BonusStrategy strategy) {
+        this.deposit = deposit;
         this.bonusStrategy = strategy;
-        // Пересчитываем депозит при изменении стратегии
-        this.deposit = this.deposit - this.bonusStrategy.calculateBonus(this.deposit) + strategy.calculateBonus(this.deposit);
     }
 
     public String getClientInfo() {
-        return String.format("Клиент: %s\nКатегория: %s\nПаспорт: %s\nБонус: %s\nВклад (с учетом бонуса): %.2f руб.",
-                name, getType(), passport, bonusStrategy.getDescription(), deposit);
+        return String.format("Клиент: %s\nКатегория: %s\nПаспорт: %s\nБонус: %s\nВклад (с учетом бонуса): %s руб.",
+                name, getType(), passport, bonusStrategy.getDescription(), Money.format(deposit));
     }
 }
\ No newline at end of file
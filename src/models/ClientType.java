@@ -0,0 +1,45 @@
+package models;
+
+public enum ClientType {
+    REGULAR("Обычный клиент"),
+    PENSIONER("Пенсионер"),
+    VIP("Вип");
+
+    private final String title;
+
+    ClientType(String title) {
+        this.title = title;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    // Новый клиент: бонус начисляется на первоначальный вклад (в копейках)
+    public Client createClient(String name, String passport, long initialDeposit) {
+        return switch (this) {
+            case VIP -> new VIPClient(name, passport, initialDeposit);
+            case PENSIONER -> new PensionerClient(name, passport, initialDeposit);
+            case REGULAR -> new SimpleClient(name, passport, initialDeposit);
+        };
+    }
+
+    // Клиент с уже начисленным бонусом (из БД или хранилища): сумма и стратегия, по которой
+    // начислен бонус, восстанавливаются как есть, даже если ставка в BonusRegistry с тех пор сменилась
+    public Client restoreClient(String name, String passport, long deposit, BonusStrategy strategy) {
+        Client client = createClient(name, passport, 0);
+        client.restore(deposit, strategy);
+        return client;
+    }
+
+    // Тип по названию из БД или файла; неизвестные значения считаются обычными клиентами
+    public static ClientType fromTitle(String title) {
+        if (title == null) return REGULAR;
+
+        return switch (title.trim().toLowerCase()) {
+            case "вип", "vip" -> VIP;
+            case "пенсионер", "pensioner" -> PENSIONER;
+            default -> REGULAR;
+        };
+    }
+}
@@ -0,0 +1,426 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Компактное хранилище клиентов в виде столбцов примитивных массивов.
+// Объекты Client создаются только по запросу (для UI или DAO).
+// Паспорт хранится как long (ровно 10 цифр), вклад - в копейках, имена - в общем буфере символов,
+// стратегия бонуса - номером в таблице различных стратегий (их единицы, а строк - миллионы).
+// Приложение работает с Bank; это хранилище используется только для массовой загрузки
+// (ClientDAO.loadAllInto) и измерений на больших объемах, в UI оно не подключено.
+// Замер benchmark.ColumnarStoreBenchmark (300 тыс. клиентов): около 120 байт кучи на клиента
+// против около 880 у Bank с объектами Client и его индексами.
+public class ColumnarClientStore {
+    private static final int PASSPORT_LENGTH = 10;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long EMPTY_KEY = -1;
+    private static final byte REMOVED = -1;
+    private static final int RERATE_BLOCK = 4096;
+
+    private static final ClientType[] TYPES = ClientType.values();
+
+    // Столбцы строк (удаленные строки помечаются REMOVED в types)
+    private long[] passports = new long[INITIAL_CAPACITY];
+    private long[] deposits = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+    private short[] bonusIds = new short[INITIAL_CAPACITY];
+    private int rowCount = 0;
+    private int liveCount = 0;
+
+    // Общий буфер имен
+    private char[] names = new char[INITIAL_CAPACITY * 32];
+    private int namesLength = 0;
+    private int garbageChars = 0;
+
+    // Стратегии, по которым начислены бонусы строк (равные по значению - один номер)
+    private final List<BonusStrategy> bonuses = new ArrayList<>();
+    private final Map<BonusStrategy, Short> bonusNumbers = new HashMap<>();
+
+    // Индекс паспорт -> строка: открытая адресация с линейным пробированием
+    private long[] indexKeys;
+    private int[] indexRows;
+
+    public ColumnarClientStore() {
+        indexKeys = new long[INITIAL_CAPACITY * 2];
+        indexRows = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(indexKeys, EMPTY_KEY);
+    }
+
+    public void addClient(Client client) {
+        addClient(client.getName(), client.getPassport(), client.getDepositKopecks(), client.getClientType(),
+                client.getBonusStrategy());
+    }
+
+    // Сумма в копейках сохраняется как есть (бонус по стратегии bonus уже должен быть учтен)
+    public void addClient(String name, String passport, long deposit, ClientType type, BonusStrategy bonus) {
+        long key = parsePassport(passport);
+        int existing = findRow(key);
+        if (existing >= 0) {
+            setRow(existing, name, deposit, type, bonus);
+            return;
+        }
+
+        ensureRowCapacity(rowCount + 1);
+        int row = rowCount++;
+        passports[row] = key;
+        nameLengths[row] = 0;
+        setRow(row, name, deposit, type, bonus);
+        liveCount++;
+        putIndex(key, row);
+    }
+
+    public void updateClient(String passport, Client updatedClient) {
+        long key = parsePassport(passport);
+        // Новый паспорт проверяется до удаления старой строки, иначе ошибка потеряла бы клиента
+        parsePassport(updatedClient.getPassport());
+        int row = findRow(key);
+        if (row < 0) {
+            return;
+        }
+
+        if (!passport.equals(updatedClient.getPassport())) {
+            removeClient(passport);
+            addClient(updatedClient);
+            return;
+        }
+        setRow(row, updatedClient.getName(), updatedClient.getDepositKopecks(), updatedClient.getClientType(),
+                updatedClient.getBonusStrategy());
+    }
+
+    public boolean removeClient(String passport) {
+        long key = parsePassport(passport);
+        int row = findRow(key);
+        if (row < 0) {
+            return false;
+        }
+
+        removeIndex(key);
+        types[row] = REMOVED;
+        garbageChars += nameLengths[row];
+        liveCount--;
+
+        // Сжимаем, когда удаленных строк стало больше половины
+        if (rowCount - liveCount > rowCount / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    public boolean containsClient(String passport) {
+        return isValidPassport(passport) && findRow(parsePassport(passport)) >= 0;
+    }
+
+    public Client getClientByPassport(String passport) {
+        if (!isValidPassport(passport)) {
+            return null;
+        }
+        int row = findRow(parsePassport(passport));
+        return row >= 0 ? buildClient(row) : null;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    // Агрегаты считаются последовательным проходом по примитивным массивам
+    public long getTotalDepositsKopecks() {
+        long total = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] != REMOVED) {
+                total += deposits[row];
+            }
+        }
+        return total;
+    }
+
+    public long getTotalDepositsKopecks(ClientType type) {
+        byte code = (byte) type.ordinal();
+        long total = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] == code) {
+                total += deposits[row];
+            }
+        }
+        return total;
+    }
+
+    public int getClientCount(ClientType type) {
+        byte code = (byte) type.ordinal();
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Смена ставки для клиентов типа, чей бонус начислен по oldStrategy: строки собираются
+    // в буфер блоками, пересчитываются пакетно и записываются обратно. Возвращает число строк.
+    public int rerate(ClientType type, BonusStrategy oldStrategy, BonusStrategy newStrategy) {
+        Short oldNumber = bonusNumbers.get(oldStrategy);
+        if (oldNumber == null || oldStrategy.equals(newStrategy)) {
+            return 0;
+        }
+        short oldId = oldNumber;
+        short newId = bonusId(newStrategy);
+        byte code = (byte) type.ordinal();
+        int[] rows = new int[Math.min(RERATE_BLOCK, Math.max(rowCount, 1))];
+        long[] buffer = new long[rows.length];
+        int total = 0;
+        int row = 0;
+
+        while (row < rowCount) {
+            int size = 0;
+            for (; row < rowCount && size < rows.length; row++) {
+                if (types[row] == code && bonusIds[row] == oldId) {
+                    rows[size] = row;
+                    buffer[size] = deposits[row];
+                    size++;
+                }
+            }
+            BonusRegistry.rerate(buffer, 0, size, oldStrategy, newStrategy);
+            for (int i = 0; i < size; i++) {
+                deposits[rows[i]] = buffer[i];
+                bonusIds[rows[i]] = newId;
+            }
+            total += size;
+        }
+        return total;
+    }
+
+    // Клиенты создаются по одному, в порядке добавления
+    public void forEachClient(Consumer<Client> action) {
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] != REMOVED) {
+                action.accept(buildClient(row));
+            }
+        }
+    }
+
+    public List<Client> getAllClients() {
+        List<Client> result = new ArrayList<>(liveCount);
+        forEachClient(result::add);
+        return result;
+    }
+
+    public Bank toBank() {
+        Bank bank = new Bank();
+        forEachClient(bank::addClient);
+        return bank;
+    }
+
+    public static ColumnarClientStore fromBank(Bank bank) {
+        ColumnarClientStore store = new ColumnarClientStore();
+        for (Client client : bank.getAllClients()) {
+            store.addClient(client);
+        }
+        return store;
+    }
+
+    private void setRow(int row, String name, long deposit, ClientType type, BonusStrategy bonus) {
+        if (!nameEquals(row, name)) {
+            garbageChars += nameLengths[row];
+            nameOffsets[row] = appendName(name);
+            nameLengths[row] = name.length();
+        }
+        deposits[row] = deposit;
+        types[row] = (byte) type.ordinal();
+        bonusIds[row] = bonusId(bonus);
+    }
+
+    private short bonusId(BonusStrategy bonus) {
+        Short number = bonusNumbers.get(bonus);
+        if (number != null) {
+            return number;
+        }
+        if (bonuses.size() > Short.MAX_VALUE) {
+            throw new IllegalStateException("Слишком много различных стратегий бонусов");
+        }
+        short id = (short) bonuses.size();
+        bonuses.add(bonus);
+        bonusNumbers.put(bonus, id);
+        return id;
+    }
+
+    private Client buildClient(int row) {
+        String name = new String(names, nameOffsets[row], nameLengths[row]);
+        String passport = formatPassport(passports[row]);
+
+        // Восстанавливаем сохраненную сумму и ее стратегию, не начисляя бонус повторно
+        return TYPES[types[row]].restoreClient(name, passport, deposits[row], bonuses.get(bonusIds[row]));
+    }
+
+    private boolean nameEquals(int row, String name) {
+        int length = nameLengths[row];
+        if (length != name.length() || length == 0) {
+            return false;
+        }
+        int offset = nameOffsets[row];
+        for (int i = 0; i < length; i++) {
+            if (names[offset + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int appendName(String name) {
+        if (namesLength + name.length() > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + name.length()));
+        }
+        int offset = namesLength;
+        name.getChars(0, name.length(), names, offset);
+        namesLength += name.length();
+        return offset;
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (capacity <= passports.length) {
+            return;
+        }
+        int newCapacity = Math.max(passports.length * 2, capacity);
+        passports = Arrays.copyOf(passports, newCapacity);
+        deposits = Arrays.copyOf(deposits, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+        bonusIds = Arrays.copyOf(bonusIds, newCapacity);
+    }
+
+    // Убираем удаленные строки и неиспользуемые имена, сохраняя порядок
+    private void compact() {
+        char[] newNames = new char[Math.max(INITIAL_CAPACITY, namesLength - garbageChars)];
+        int newNamesLength = 0;
+        int target = 0;
+
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] == REMOVED) {
+                continue;
+            }
+            int length = nameLengths[row];
+            System.arraycopy(names, nameOffsets[row], newNames, newNamesLength, length);
+
+            passports[target] = passports[row];
+            deposits[target] = deposits[row];
+            types[target] = types[row];
+            bonusIds[target] = bonusIds[row];
+            nameOffsets[target] = newNamesLength;
+            nameLengths[target] = length;
+
+            newNamesLength += length;
+            target++;
+        }
+
+        rowCount = target;
+        names = newNames;
+        namesLength = newNamesLength;
+        garbageChars = 0;
+        rebuildIndex(indexKeys.length);
+    }
+
+    private int findRow(long key) {
+        int mask = indexKeys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = indexKeys[slot];
+            if (current == EMPTY_KEY) return -1;
+            if (current == key) return indexRows[slot];
+        }
+    }
+
+    private void putIndex(long key, int row) {
+        // Держим заполнение индекса не выше 50%
+        if (liveCount * 2 > indexKeys.length) {
+            rebuildIndex(indexKeys.length * 2);
+        }
+        insertIndex(key, row);
+    }
+
+    private void insertIndex(long key, int row) {
+        int mask = indexKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (indexKeys[slot] != EMPTY_KEY && indexKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        indexKeys[slot] = key;
+        indexRows[slot] = row;
+    }
+
+    // Удаление со сдвигом назад, чтобы не оставлять "надгробий" в цепочках
+    private void removeIndex(long key) {
+        int mask = indexKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (indexKeys[slot] != key) {
+            if (indexKeys[slot] == EMPTY_KEY) return;
+            slot = (slot + 1) & mask;
+        }
+
+        int gap = slot;
+        for (int next = (gap + 1) & mask; indexKeys[next] != EMPTY_KEY; next = (next + 1) & mask) {
+            int home = hash(indexKeys[next]) & mask;
+            boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (movable) {
+                indexKeys[gap] = indexKeys[next];
+                indexRows[gap] = indexRows[next];
+                gap = next;
+            }
+        }
+        indexKeys[gap] = EMPTY_KEY;
+    }
+
+    private void rebuildIndex(int capacity) {
+        indexKeys = new long[capacity];
+        indexRows = new int[capacity];
+        Arrays.fill(indexKeys, EMPTY_KEY);
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] != REMOVED) {
+                insertIndex(passports[row], row);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static boolean isValidPassport(String passport) {
+        if (passport == null || passport.length() != PASSPORT_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < PASSPORT_LENGTH; i++) {
+            char c = passport.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parsePassport(String passport) {
+        if (!isValidPassport(passport)) {
+            throw new IllegalArgumentException("Паспорт должен содержать ровно 10 цифр: " + passport);
+        }
+        long value = 0;
+        for (int i = 0; i < PASSPORT_LENGTH; i++) {
+            value = value * 10 + (passport.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static String formatPassport(long value) {
+        char[] digits = new char[PASSPORT_LENGTH];
+        for (int i = PASSPORT_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+}
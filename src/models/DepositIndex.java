@@ -0,0 +1,167 @@
+package models;
+
+import java.util.SplittableRandom;
+
+// Дерево порядковых статистик по суммам вкладов (декартово дерево с размерами поддеревьев).
+// Одинаковые суммы хранятся в одном узле со счетчиком.
+// Ранг, k-я по величине сумма и количество в диапазоне - за O(log n).
+class DepositIndex {
+    private static final class Node {
+        final long value;
+        final int priority;
+        int count = 1;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(long value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    void add(long value) {
+        root = insert(root, value);
+    }
+
+    void remove(long value) {
+        root = delete(root, value);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    // Количество сумм строго меньше value
+    int countLess(long value) {
+        int result = 0;
+        Node node = root;
+        while (node != null) {
+            if (Long.compare(value, node.value) <= 0) {
+                node = node.left;
+            } else {
+                result += size(node.left) + node.count;
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    // Количество сумм меньше или равных value
+    int countLessOrEqual(long value) {
+        int result = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = Long.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                result += size(node.left) + node.count;
+                if (cmp == 0) {
+                    break;
+                }
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    // k-я по возрастанию сумма, k от 0 до size() - 1
+    long select(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException("Нет суммы с номером " + k);
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k < leftSize + node.count) {
+                return node.value;
+            } else {
+                k -= leftSize + node.count;
+                node = node.right;
+            }
+        }
+    }
+
+    private Node insert(Node node, long value) {
+        if (node == null) {
+            return new Node(value, random.nextInt());
+        }
+
+        int cmp = Long.compare(value, node.value);
+        if (cmp == 0) {
+            node.count++;
+        } else if (cmp < 0) {
+            node.left = insert(node.left, value);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, value);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node delete(Node node, long value) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = Long.compare(value, node.value);
+        if (cmp < 0) {
+            node.left = delete(node.left, value);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, value);
+        } else if (node.count > 1) {
+            node.count--;
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            // Опускаем удаляемый узел вниз, пока у него не останется одного потомка
+            node = rotateRight(node);
+            node.right = delete(node.right, value);
+        } else {
+            node = rotateLeft(node);
+            node.left = delete(node.left, value);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + node.count;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
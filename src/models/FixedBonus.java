@@ -1,19 +1,73 @@
 package models;
 
 public class FixedBonus implements BonusStrategy {
-    private final double bonusAmount;
+    private final long bonusAmount;
 
     @Override
     public String getDescription() {
         return "Фиксированный";
     }
 
-    public FixedBonus(double amount) {
+    // Сумма бонуса в копейках
+    public FixedBonus(long amount) {
+        if (amount < 0) throw new IllegalArgumentException("Бонус не может быть отрицательным");
         this.bonusAmount = amount;
     }
 
+    public long getAmount() {
+        return bonusAmount;
+    }
+
     @Override
-    public double calculateBonus(double deposit) {
+    public long calculateBonus(long deposit) {
         return bonusAmount;
     }
+
+    @Override
+    public String getCode() {
+        return "fixed";
+    }
+
+    // В БД сумма хранится в рублях, как и раньше
+    @Override
+    public double getValue() {
+        return Money.toRubles(bonusAmount);
+    }
+
+    @Override
+    public String getDetails() {
+        return "Фиксированный бонус " + Money.format(bonusAmount) + " руб.";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FixedBonus bonus && bonus.bonusAmount == bonusAmount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bonusAmount);
+    }
+
+    // Вклад не может стать меньше нуля, даже если бонус был другим
+    @Override
+    public long baseDeposit(long depositWithBonus) {
+        return Math.max(0, depositWithBonus - bonusAmount);
+    }
+
+    @Override
+    public void applyBonuses(long[] deposits, long[] result, int from, int to) {
+        long amount = bonusAmount;
+        for (int i = from; i < to; i++) {
+            result[i] = deposits[i] + amount;
+        }
+    }
+
+    @Override
+    public void baseDeposits(long[] deposits, long[] result, int from, int to) {
+        long amount = bonusAmount;
+        for (int i = from; i < to; i++) {
+            result[i] = Math.max(0, deposits[i] - amount);
+        }
+    }
 }
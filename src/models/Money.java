@@ -0,0 +1,54 @@
+package models;
+
+// Денежные суммы хранятся как long в копейках: сложение точное и без создания объектов.
+// double используется только для отображения.
+public final class Money {
+    public static final long KOPECKS_PER_RUBLE = 100;
+
+    private Money() {
+    }
+
+    public static long fromRubles(double rubles) {
+        return Math.round(rubles * KOPECKS_PER_RUBLE);
+    }
+
+    public static double toRubles(long kopecks) {
+        return (double) kopecks / KOPECKS_PER_RUBLE;
+    }
+
+    // Разбор суммы в рублях ("1500", "1500.5", "1 500,50") без промежуточного double
+    public static long parse(String text) throws NumberFormatException {
+        if (text == null) {
+            throw new NumberFormatException("Пустая строка");
+        }
+
+        String clean = text.trim().replaceAll("\\s", "").replace(',', '.');
+        boolean negative = clean.startsWith("-");
+        if (negative) {
+            clean = clean.substring(1);
+        }
+        if (!clean.matches("\\d+(\\.\\d{0,2})?|\\.\\d{1,2}")) {
+            throw new NumberFormatException("Неверный формат суммы: " + text);
+        }
+
+        int dot = clean.indexOf('.');
+        String rubles = dot >= 0 ? clean.substring(0, dot) : clean;
+        String kopecks = dot >= 0 ? clean.substring(dot + 1) : "";
+        if (rubles.length() > 15) {
+            throw new NumberFormatException("Слишком большая сумма: " + text);
+        }
+
+        long value = (rubles.isEmpty() ? 0 : Long.parseLong(rubles)) * KOPECKS_PER_RUBLE;
+        if (!kopecks.isEmpty()) {
+            value += Long.parseLong(kopecks.length() == 1 ? kopecks + "0" : kopecks);
+        }
+        return negative ? -value : value;
+    }
+
+    // Формат "1500.50" - точка и ровно два знака после нее
+    public static String format(long kopecks) {
+        long abs = Math.abs(kopecks);
+        String result = (abs / KOPECKS_PER_RUBLE) + "." + (abs % KOPECKS_PER_RUBLE < 10 ? "0" : "") + (abs % KOPECKS_PER_RUBLE);
+        return kopecks < 0 ? "-" + result : result;
+    }
+}
@@ -0,0 +1,164 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Индекс поиска по ФИО: префиксы слов через упорядоченный словарь,
+// вхождения внутри слова - через триграммы по уникальным словам.
+// Регистр (в том числе кириллицы) и буква "ё" не учитываются.
+public class NameSearchIndex {
+    private static final int GRAM = 3;
+
+    // Слово -> клиенты, в ФИО которых оно встречается
+    private final TreeMap<String, Set<Client>> words = new TreeMap<>();
+    // Триграмма -> слова, которые ее содержат (слов намного меньше, чем клиентов)
+    private final Map<String, Set<String>> grams = new HashMap<>();
+
+    void add(Client client) {
+        for (String word : tokens(client.getName())) {
+            Set<Client> owners = words.get(word);
+            if (owners == null) {
+                owners = new LinkedHashSet<>();
+                words.put(word, owners);
+                for (String gram : grams(word)) {
+                    grams.computeIfAbsent(gram, key -> new LinkedHashSet<>()).add(word);
+                }
+            }
+            owners.add(client);
+        }
+    }
+
+    void remove(Client client) {
+        for (String word : tokens(client.getName())) {
+            Set<Client> owners = words.get(word);
+            if (owners == null || !owners.remove(client) || !owners.isEmpty()) {
+                continue;
+            }
+            words.remove(word);
+            for (String gram : grams(word)) {
+                Set<String> gramWords = grams.get(gram);
+                if (gramWords != null && gramWords.remove(word) && gramWords.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    // Сначала клиенты, у которых слово ФИО начинается с запроса, затем вхождения внутри слова
+    public List<Client> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // Кандидатов ищем по самому длинному слову запроса, остальное проверяем по полному ФИО
+        Set<String> parts = tokens(normalized);
+        String key = "";
+        for (String part : parts) {
+            if (part.length() > key.length()) {
+                key = part;
+            }
+        }
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        boolean multiWord = parts.size() > 1;
+
+        Set<Client> result = new LinkedHashSet<>();
+        for (Set<Client> owners : words.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            if (collect(owners, normalized, multiWord, result, limit)) {
+                return new ArrayList<>(result);
+            }
+        }
+
+        // Для ключа короче триграммы кандидатов не выбрать - проверяем все уникальные слова
+        Collection<String> candidates = key.length() >= GRAM ? candidateWords(key) : words.keySet();
+        for (String word : candidates) {
+            if (!word.startsWith(key) && word.contains(key)
+                    && collect(words.get(word), normalized, multiWord, result, limit)) {
+                break;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    // Нижний регистр (включая кириллицу), "ё" -> "е", пробелы схлопываются
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = result.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                result.append(' ');
+                pendingSpace = false;
+            }
+            c = Character.toLowerCase(c);
+            result.append(c == 'ё' ? 'е' : c);
+        }
+        return result.toString();
+    }
+
+    private boolean collect(Collection<Client> owners, String query, boolean multiWord, Set<Client> result, int limit) {
+        for (Client client : owners) {
+            if (!multiWord || normalize(client.getName()).contains(query)) {
+                result.add(client);
+                if (result.size() >= limit) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Слова, содержащие все триграммы запроса: берем самый короткий список и проверяем его
+    private Collection<String> candidateWords(String key) {
+        Set<String> smallest = null;
+        for (String gram : grams(key)) {
+            Set<String> gramWords = grams.get(gram);
+            if (gramWords == null) {
+                return List.of();
+            }
+            if (smallest == null || gramWords.size() < smallest.size()) {
+                smallest = gramWords;
+            }
+        }
+        return smallest == null ? List.of() : smallest;
+    }
+
+    // Слова ФИО; дефис считается разделителем (двойные фамилии ищутся по каждой части)
+    private static Set<String> tokens(String name) {
+        Set<String> result = new LinkedHashSet<>();
+        String normalized = normalize(name);
+        int start = 0;
+        for (int i = 0; i <= normalized.length(); i++) {
+            if (i == normalized.length() || normalized.charAt(i) == ' ' || normalized.charAt(i) == '-') {
+                if (i > start) {
+                    result.add(normalized.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> grams(String word) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            result.add(word.substring(i, i + GRAM));
+        }
+        return result;
+    }
+}
@@ -7,7 +7,49 @@ public class NoBonus implements BonusStrategy {
     }
 
     @Override
-    public double calculateBonus(double deposit) {
+    public long calculateBonus(long deposit) {
         return 0;
     }
-}
\ No newline at end of file
+
+    @Override
+    public String getCode() {
+        return "none";
+    }
+
+    @Override
+    public double getValue() {
+        return 0;
+    }
+
+    @Override
+    public String getDetails() {
+        return "Без бонуса";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NoBonus;
+    }
+
+    @Override
+    public int hashCode() {
+        return NoBonus.class.hashCode();
+    }
+
+    @Override
+    public long baseDeposit(long depositWithBonus) {
+        return depositWithBonus;
+    }
+
+    @Override
+    public void applyBonuses(long[] deposits, long[] result, int from, int to) {
+        if (deposits != result) {
+            System.arraycopy(deposits, from, result, from, to - from);
+        }
+    }
+
+    @Override
+    public void baseDeposits(long[] deposits, long[] result, int from, int to) {
+        applyBonuses(deposits, result, from, to);
+    }
+}
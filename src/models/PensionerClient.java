@@ -1,12 +1,17 @@
 package models;
 
 public class PensionerClient extends Client {
-    public PensionerClient(String name, String passport, double deposit) {
-        super(name, deposit, passport, new FixedBonus(3000));
+    public PensionerClient(String name, String passport, long deposit) {
+        super(name, deposit, passport, BonusRegistry.forType(ClientType.PENSIONER));
     }
 
     @Override
     public String getType() {
         return "Пенсионер";
     }
+
+    @Override
+    public ClientType getClientType() {
+        return ClientType.PENSIONER;
+    }
 }
\ No newline at end of file
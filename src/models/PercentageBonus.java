@@ -1,7 +1,11 @@
 package models;
 
+import java.math.BigDecimal;
+
 public class PercentageBonus implements BonusStrategy {
-    private final double percentage;
+    // Процент хранится в сотых долях процента (0.1 -> 1000), расчет идет в целых числах
+    private static final long BASIS_POINTS = 10_000;
+    private final long basisPoints;
 
     @Override
     public String getDescription() {
@@ -10,11 +14,70 @@ public class PercentageBonus implements BonusStrategy {
 
     public PercentageBonus(double percentage) {
         if (percentage < 0) throw new IllegalArgumentException("Процент не может быть отрицательным");
-        this.percentage = percentage;
+        this.basisPoints = Math.round(percentage * BASIS_POINTS);
+    }
+
+    public double getPercentage() {
+        return (double) basisPoints / BASIS_POINTS;
+    }
+
+    @Override
+    public long calculateBonus(long deposit) {
+        // Округление до копейки по правилу "половина вверх"
+        return (deposit * basisPoints + BASIS_POINTS / 2) / BASIS_POINTS;
+    }
+
+    @Override
+    public String getCode() {
+        return "percentage";
+    }
+
+    @Override
+    public double getValue() {
+        return getPercentage();
+    }
+
+    @Override
+    public String getDetails() {
+        // 1000 -> "10", 1250 -> "12.5"
+        String percent = BigDecimal.valueOf(basisPoints, 2).stripTrailingZeros().toPlainString();
+        return percent + "% от суммы вклада";
+    }
+
+    // deposit = base * (1 + p), base = deposit / (1 + p) с округлением до ближайшей копейки
+    @Override
+    public long baseDeposit(long depositWithBonus) {
+        long divisor = BASIS_POINTS + basisPoints;
+        return (depositWithBonus * BASIS_POINTS + divisor / 2) / divisor;
+    }
+
+    // Стратегии равны, если равны ставки: по ним сравниваются стратегии клиентов при пересчете
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PercentageBonus bonus && bonus.basisPoints == basisPoints;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(basisPoints);
+    }
+
+    // Один плотный цикл без виртуальных вызовов и создания объектов
+    @Override
+    public void applyBonuses(long[] deposits, long[] result, int from, int to) {
+        long bp = basisPoints;
+        for (int i = from; i < to; i++) {
+            long deposit = deposits[i];
+            result[i] = deposit + (deposit * bp + BASIS_POINTS / 2) / BASIS_POINTS;
+        }
     }
 
     @Override
-    public double calculateBonus(double deposit) {
-        return deposit * percentage;
+    public void baseDeposits(long[] deposits, long[] result, int from, int to) {
+        long divisor = BASIS_POINTS + basisPoints;
+        long half = divisor / 2;
+        for (int i = from; i < to; i++) {
+            result[i] = (deposits[i] * BASIS_POINTS + half) / divisor;
+        }
     }
-}
\ No newline at end of file
+}
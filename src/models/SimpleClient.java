@@ -1,12 +1,17 @@
 package models;
 
 public class SimpleClient extends Client {
-    public SimpleClient(String name, String passport, double deposit) {
-        super(name, deposit, passport, new NoBonus());
+    public SimpleClient(String name, String passport, long deposit) {
+        super(name, deposit, passport, BonusRegistry.forType(ClientType.REGULAR));
     }
 
     @Override
     public String getType() {
         return "Обычный клиент";
     }
+
+    @Override
+    public ClientType getClientType() {
+        return ClientType.REGULAR;
+    }
 }
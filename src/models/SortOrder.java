@@ -0,0 +1,8 @@
+package models;
+
+public enum SortOrder {
+    INSERTION,
+    NAME,
+    DEPOSIT,
+    TYPE
+}
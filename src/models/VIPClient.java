@@ -1,12 +1,17 @@
 package models;
 
 public class VIPClient extends Client {
-    public VIPClient(String name, String passport, double deposit) {
-        super(name, deposit, passport, new PercentageBonus(0.1)); // VIP +10%
+    public VIPClient(String name, String passport, long deposit) {
+        super(name, deposit, passport, BonusRegistry.forType(ClientType.VIP));
     }
 
     @Override
     public String getType() {
         return "Вип";
     }
+
+    @Override
+    public ClientType getClientType() {
+        return ClientType.VIP;
+    }
 }
\ No newline at end of file
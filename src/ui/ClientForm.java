@@ -374,19 +374,21 @@ public class ClientForm extends JDialog {
     }
 
     private void updateBonusInfo() {
+        bonusLabel.setText(BonusRegistry.forType(selectedClientType()).getDetails());
+
+        calculateBonus();
+    }
+
+    private ClientType selectedClientType() {
         String selectedType = (String) typeComboBox.getSelectedItem();
         switch (selectedType) {
             case "VIP клиент":
-                bonusLabel.setText("Процентный бонус (10%)");
-                break;
+                return ClientType.VIP;
             case "Пенсионер":
-                bonusLabel.setText("Фиксированный бонус");
-                break;
+                return ClientType.PENSIONER;
             default:
-                bonusLabel.setText("Без бонуса");
+                return ClientType.REGULAR;
         }
-
-        calculateBonus();
     }
 
     private void calculateBonus() {
@@ -406,26 +408,14 @@ public class ClientForm extends JDialog {
             // Заменяем запятую на точку
             depositText = depositText.replace(',', '.');
 
-            double deposit = Double.parseDouble(depositText);
+            long deposit = Money.parse(depositText);
 
-            String selectedType = (String) typeComboBox.getSelectedItem();
-            double bonus = 0;
+            // Ставки берутся из общего реестра, как и у создаваемого клиента
+            long bonus = BonusRegistry.forType(selectedClientType()).calculateBonus(deposit);
+            bonusValueLabel.setText(Money.format(bonus) + " руб.");
 
-            switch (selectedType) {
-                case "VIP клиент":
-                    bonus = deposit * 0.1;
-                    bonusValueLabel.setText(decimalFormat.format(bonus) + " руб.");
-                    break;
-                case "Пенсионер":
-                    bonus = 3000;
-                    bonusValueLabel.setText(decimalFormat.format(bonus) + " руб.");
-                    break;
-                default:
-                    bonusValueLabel.setText("0.00 руб.");
-            }
-
-            double total = deposit + bonus;
-            totalLabel.setText(decimalFormat.format(total) + " руб.");
+            long total = deposit + bonus;
+            totalLabel.setText(Money.format(total) + " руб.");
 
         } catch (NumberFormatException e) {
             bonusValueLabel.setText("0.00 руб.");
@@ -529,7 +519,7 @@ public class ClientForm extends JDialog {
         String parseText = depositText.replace(',', '.');
 
         try {
-            double deposit = Double.parseDouble(parseText);
+            long deposit = Money.parse(parseText);
 
             if (deposit <= 0) {
                 showError("Сумма должна быть больше 0!");
@@ -538,7 +528,7 @@ public class ClientForm extends JDialog {
                 return false;
             }
 
-            if (deposit > 1000000000) {
+            if (deposit > 1000000000 * Money.KOPECKS_PER_RUBLE) {
                 showError("Сумма слишком велика! Максимум 1 000 000 000 руб.");
                 depositField.requestFocus();
                 depositField.selectAll();
@@ -584,22 +574,9 @@ public class ClientForm extends JDialog {
         String name = nameField.getText().trim();
 
         // Получаем сумму (уже проверена)
-        String depositText = depositField.getText().replace(',', '.');
-        double deposit = Double.parseDouble(depositText);
-
-        String type = (String) typeComboBox.getSelectedItem();
+        long deposit = Money.parse(depositField.getText());
 
-        Client client;
-        switch (type) {
-            case "VIP клиент":
-                client = new VIPClient(name, passport, deposit);
-                break;
-            case "Пенсионер":
-                client = new PensionerClient(name, passport, deposit);
-                break;
-            default:
-                client = new SimpleClient(name, passport, deposit);
-        }
+        Client client = selectedClientType().createClient(name, passport, deposit);
 
         mainForm.addOrUpdateClient(client, isNewClient);
         dispose();
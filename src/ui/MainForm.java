@@ -1,7 +1,12 @@
 package ui;
 
 import models.*;
+import database.ChangeSet;
 import database.ClientDAO;
+import database.DepositStatistics;
+import database.RerateJob;
+import database.SettingsDAO;
+import database.WriteBehindQueue;
 import utils.FileUtils;
 import database.DatabaseBackup;
 
@@ -9,18 +14,42 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
+import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MainForm extends JFrame {
     private Bank bank = new Bank();
     private ClientDAO clientDAO = new ClientDAO();
+    private final SettingsDAO settingsDAO = new SettingsDAO();
+    // Изменения клиентов пишутся в БД в фоне, группами
+    private final WriteBehindQueue persistence = new WriteBehindQueue(clientDAO);
+    // Версия БД, с которой синхронизирован bank (для обновления только изменений)
+    private long syncedVersion;
     private JTable clientTable;
     private DefaultTableModel tableModel;
+    // Паспорт -> номер строки tableModel, чтобы события Bank не искали строку перебором
+    private final Map<String, Integer> tableRows = new HashMap<>();
+    private JTextField searchField;
+    // Фильтр по типу клиента; null в списке - все типы
+    private JComboBox<ClientType> typeFilter;
+
+    private static final String TITLE = "Банковская система";
+    // Сколько совпадений поиска (и клиентов выбранного типа) показывать в таблице
+    private static final int SEARCH_LIMIT = 500;
+    // Сколько крупнейших и наименьших вкладов показывать в статистике
+    private static final int STATISTICS_TOP = 5;
+    // При большем числе изменений за раз таблица перестраивается целиком
+    private static final int INCREMENTAL_LIMIT = 100;
 
     public MainForm() {
-        setTitle("Банковская система");
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setTitle(TITLE);
+        // Выход через exitApplication: сначала нужно дописать очередь изменений
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         setSize(900, 700);
         setLocationRelativeTo(null);
 
@@ -28,6 +57,65 @@ public class MainForm extends JFrame {
         loadClientsFromDatabase();
         initComponents();
         setIcon();
+
+        // Ошибка отложенной записи приходит из фонового потока
+        persistence.setErrorListener(error -> SwingUtilities.invokeLater(() -> onWriteError(error)));
+
+        // Перед выходом дописываем очередь изменений в БД
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exitApplication();
+            }
+        });
+    }
+
+    // error == null - запись снова работает
+    private void onWriteError(SQLException error) {
+        if (error == null) {
+            setTitle(TITLE);
+            return;
+        }
+        setTitle(TITLE + " - изменения не сохраняются в БД");
+        JOptionPane.showMessageDialog(this,
+                "Не удается записать изменения в БД: " + error.getMessage() + "\n" +
+                        "Изменения сохранены в памяти, запись будет повторяться.",
+                "Ошибка записи", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void exitApplication() {
+        if (!writePending("Выйти без сохранения")) {
+            return;
+        }
+        persistence.close();
+        dispose();
+        System.exit(0);
+    }
+
+    // Дописывает очередь изменений. Если запись не удается, пользователь выбирает: повторить,
+    // отбросить несохраненные изменения (discardOption; null - без этого варианта)
+    // или отменить действие (false). Действия, которые читают БД или копируют ее,
+    // без этого работали бы с БД, отстающей от bank.
+    private boolean writePending(String discardOption) {
+        while (!persistence.flush()) {
+            SQLException error = persistence.getLastError();
+            Object[] options = discardOption != null
+                    ? new Object[]{"Повторить", discardOption, "Отмена"}
+                    : new Object[]{"Повторить", "Отмена"};
+            int choice = JOptionPane.showOptionDialog(this,
+                    "Не удалось записать в БД изменений: " + persistence.getPendingCount() + "\n" +
+                            "Причина: " + (error != null ? error.getMessage() : "неизвестна"),
+                    "Ошибка записи", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.ERROR_MESSAGE,
+                    null, options, options[0]);
+            if (discardOption != null && choice == 1) {
+                persistence.discard();
+                return true;
+            }
+            if (choice != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void setIcon() {
@@ -41,19 +129,38 @@ public class MainForm extends JFrame {
 
     private void initializeDatabase() {
         database.DatabaseConnection.initializeDatabase();
+        // Копия при запуске - после миграций, в фоновом потоке
+        DatabaseBackup.autoBackupOnStart();
     }
 
-    private void loadClientsFromDatabase() {
+    // false - загрузка отменена или не удалась, bank прежний
+    private boolean loadClientsFromDatabase() {
+        // Несохраненные изменения старого Bank должны попасть в БД до перечитывания
+        if (!writePending("Перечитать без них")) {
+            return false;
+        }
         try {
-            List<Client> clients = clientDAO.getAllClients();
+            bank.removeListener(persistence);
+
+            // Ставки этой БД - до чтения клиентов, чтобы клиенты по текущей ставке разделяли ее стратегию
+            settingsDAO.loadBonusRates();
+
             bank = new Bank(); // ВАЖНО: создаем новый объект Bank
-            for (Client client : clients) {
-                bank.addClient(client);
-            }
-            System.out.println("Загружено клиентов из БД: " + clients.size());
+            // Версию берем до чтения: изменения во время загрузки придут в следующем обновлении
+            long version = clientDAO.getChangeVersion();
+            // Клиенты добавляются по мере чтения, без промежуточного списка
+            clientDAO.forEachClient(bank::addClient);
+            syncedVersion = version;
+            clientDAO.pruneTombstones(version);
+            // Подписываемся после загрузки: дальше таблица и БД обновляются по событиям
+            bank.addListener(this::onBankChanged);
+            bank.addListener(persistence);
+            System.out.println("Загружено клиентов из БД: " + bank.getClientCount());
+            return true;
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(this, "Ошибка загрузки данных из БД: " + e.getMessage(),
                     "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return false;
         }
     }
 
@@ -103,10 +210,12 @@ public class MainForm extends JFrame {
         JButton backupButton = createStyledButton("💾 Резервная копия", new Color(123, 31, 162));
         JButton restoreButton = createStyledButton("🔄 Восстановить", new Color(123, 31, 162));
         JButton statsButton = createStyledButton("📈 Статистика", new Color(255, 160, 0));
+        JButton ratesButton = createStyledButton("⚙️ Ставки бонусов", new Color(255, 160, 0));
 
         dbButtonPanel.add(backupButton);
         dbButtonPanel.add(restoreButton);
         dbButtonPanel.add(statsButton);
+        dbButtonPanel.add(ratesButton);
 
         // Панель сортировки
         JPanel sortPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
@@ -159,6 +268,33 @@ public class MainForm extends JFrame {
         JScrollPane scrollPane = new JScrollPane(clientTable);
         scrollPane.setBorder(BorderFactory.createTitledBorder("Список клиентов"));
 
+        // Панель поиска по ФИО
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
+        searchPanel.add(new JLabel("🔍 Поиск по ФИО:"), BorderLayout.WEST);
+        searchField = new JTextField();
+        searchField.setToolTipText("Часть фамилии, имени или отчества");
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        typeFilter = new JComboBox<>();
+        typeFilter.addItem(null);
+        for (ClientType type : ClientType.values()) {
+            typeFilter.addItem(type);
+        }
+        typeFilter.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                String text = value == null ? "Все типы" : ((ClientType) value).getTitle();
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        typeFilter.setToolTipText("Клиенты выбранного типа, крупные вклады первыми");
+        typeFilter.addActionListener(e -> refreshTable());
+        searchPanel.add(typeFilter, BorderLayout.EAST);
+
+        JPanel tablePanel = new JPanel(new BorderLayout(5, 5));
+        tablePanel.add(searchPanel, BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+
         // Панель информации
         JPanel infoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JLabel infoLabel = new JLabel();
@@ -173,7 +309,7 @@ public class MainForm extends JFrame {
         // Добавляем компоненты на главную панель
         mainPanel.add(headerPanel, BorderLayout.NORTH);
         mainPanel.add(topPanel, BorderLayout.WEST);
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(tablePanel, BorderLayout.CENTER);
         mainPanel.add(infoPanel, BorderLayout.SOUTH);
 
         // Обработчики событий для кнопок действий
@@ -210,9 +346,27 @@ public class MainForm extends JFrame {
         importButton.addActionListener(e -> importFromFile());
 
         // Обработчики для БД операций
-        backupButton.addActionListener(e -> DatabaseBackup.backupDatabase(this));
+        backupButton.addActionListener(e -> {
+            // Копия без незаписанных изменений не совпадала бы с тем, что видно в окне
+            if (writePending(null)) {
+                DatabaseBackup.backupDatabase(this);
+            }
+        });
         restoreButton.addActionListener(e -> restoreDatabaseAndRefresh()); // ИЗМЕНИЛИ
         statsButton.addActionListener(e -> showStatistics());
+        ratesButton.addActionListener(e -> changeBonusRates());
+
+        // Поиск обновляет таблицу при каждом изменении текста
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { refreshTable(); }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { refreshTable(); }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { refreshTable(); }
+        });
 
         // Двойной клик по таблице для редактирования
         clientTable.addMouseListener(new MouseAdapter() {
@@ -249,27 +403,93 @@ public class MainForm extends JFrame {
         return button;
     }
 
-    // НОВЫЙ МЕТОД: полное обновление данных
+    // Обновление данных: из БД читаются только строки, измененные после последней синхронизации
     private void refreshAllData() {
+        // Сначала дописываем свои изменения, чтобы сравнивать bank с актуальной БД:
+        // иначе строки БД затерли бы в bank изменения, которые еще ждут записи
+        if (!writePending(null)) {
+            return;
+        }
+        try {
+            ChangeSet changes = clientDAO.changesSince(syncedVersion);
+            if (changes.version() < syncedVersion) {
+                // Счетчик изменений меньше известного - файл БД заменили, нужна полная загрузка
+                reloadAllData();
+                return;
+            }
+            System.out.println("Изменений в БД: " + changes.size());
+            applyChanges(changes);
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(this, "Ошибка обновления данных из БД: " + e.getMessage(),
+                    "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        refreshTable();
+        JOptionPane.showMessageDialog(this,
+                "Данные успешно обновлены из базы данных",
+                "Обновление", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // Полная перезагрузка (после восстановления БД из копии)
+    private void reloadAllData() {
         System.out.println("Полное обновление данных...");
-        loadClientsFromDatabase(); // Перезагружаем данные из БД
+        if (!loadClientsFromDatabase()) { // Перезагружаем данные из БД
+            return;
+        }
         refreshTable(); // Обновляем таблицу
         JOptionPane.showMessageDialog(this,
                 "Данные успешно обновлены из базы данных",
                 "Обновление", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    // Изменения уже есть в БД, поэтому в очередь записи они не ставятся.
+    // Строки, совпадающие с bank (в том числе записанные самим приложением), пропускаются.
+    private void applyChanges(ChangeSet changes) {
+        persistence.runPersisted(() -> {
+            bank.beginBatch();
+            try {
+                for (Client client : changes.changed()) {
+                    Client current = bank.getClientByPassport(client.getPassport());
+                    if (current == null) {
+                        bank.addClient(client);
+                    } else if (!sameData(current, client)) {
+                        bank.updateClient(client.getPassport(), client);
+                    }
+                }
+                for (String passport : changes.removed()) {
+                    bank.removeClient(passport);
+                }
+            } finally {
+                bank.endBatch();
+            }
+        });
+        syncedVersion = changes.version();
+    }
+
+    private static boolean sameData(Client current, Client loaded) {
+        return current != null
+                && current.getClientType() == loaded.getClientType()
+                && current.getDepositKopecks() == loaded.getDepositKopecks()
+                && current.getName().equals(loaded.getName());
+    }
+
     // НОВЫЙ МЕТОД: восстановление БД с обновлением данных
     private void restoreDatabaseAndRefresh() {
-        // Восстанавливаем БД
-        DatabaseBackup.restoreDatabase(this);
+        // Очередь дописывается до копии текущей БД. Незаписанные изменения относятся
+        // к старой БД: их нельзя оставлять в очереди, иначе они запишутся в восстановленную
+        if (!writePending("Восстановить без них")) {
+            return;
+        }
+        if (!DatabaseBackup.restoreDatabase(this)) {
+            return;
+        }
 
         // Ждем немного, чтобы файл БД точно скопировался
         Timer timer = new Timer(1000, new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                // Обновляем данные из восстановленной БД
-                refreshAllData();
+                // Обновляем данные из восстановленной БД (версии старой БД к ней не относятся)
+                reloadAllData();
                 ((Timer)e.getSource()).stop();
             }
         });
@@ -317,20 +537,12 @@ public class MainForm extends JFrame {
                     JOptionPane.WARNING_MESSAGE);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                try {
-                    clientDAO.deleteClient(passport);
-                    bank.removeClient(passport);
-                    refreshTable();
-
-                    JOptionPane.showMessageDialog(this,
-                            "Клиент успешно удален:\n" + name + " (" + passport + ")",
-                            "Успех", JOptionPane.INFORMATION_MESSAGE);
+                // Удаление из БД выполнит очередь отложенной записи
+                bank.removeClient(passport);
 
-                } catch (SQLException e) {
-                    JOptionPane.showMessageDialog(this,
-                            "Ошибка удаления из БД: " + e.getMessage(),
-                            "Ошибка", JOptionPane.ERROR_MESSAGE);
-                }
+                JOptionPane.showMessageDialog(this,
+                        "Клиент успешно удален:\n" + name + " (" + passport + ")",
+                        "Успех", JOptionPane.INFORMATION_MESSAGE);
             }
         } else {
             JOptionPane.showMessageDialog(this,
@@ -341,32 +553,133 @@ public class MainForm extends JFrame {
 
     public void refreshTable() {
         tableModel.setRowCount(0);
+        tableRows.clear();
+
+        String query = searchField != null ? searchField.getText().trim() : "";
+        ClientType type = selectedType();
+        List<Client> clients;
+        if (!query.isEmpty()) {
+            clients = bank.searchByName(query, SEARCH_LIMIT);
+            if (type != null) {
+                clients = clients.stream().filter(client -> client.getClientType() == type).toList();
+            }
+        } else if (type != null) {
+            clients = findByType(type);
+        } else {
+            clients = bank.getAllClients();
+        }
 
-        for (Client client : bank.getAllClients()) {
-            Object[] row = {
-                    client.getPassport(),
-                    client.getName(),
-                    client.getType(),
-                    client.getDeposit(),
-                    client.getBonusStrategy().getDescription(),
-                    getBonusDescription(client)
-            };
-            tableModel.addRow(row);
+        for (Client client : clients) {
+            addTableRow(client);
         }
 
         // Обновляем информацию внизу
         updateInfoLabel();
     }
 
-    private String getBonusDescription(Client client) {
-        BonusStrategy bonus = client.getBonusStrategy();
-        if (bonus instanceof models.PercentageBonus) {
-            return "10% от суммы вклада";
-        } else if (bonus instanceof models.FixedBonus) {
-            return "Фиксированный бонус 3000 руб.";
-        } else {
-            return "Без бонуса";
+    // Изменения Bank применяются к таблице построчно. При поиске или сортировке
+    // позиция строки зависит от данных, поэтому там таблица перестраивается целиком.
+    private void onBankChanged(List<BankEvent> events) {
+        if (tableModel == null) {
+            return;
+        }
+        if (!searchField.getText().trim().isEmpty() || selectedType() != null
+                || bank.getSortOrder() != models.SortOrder.INSERTION
+                || events.size() > INCREMENTAL_LIMIT || hasRemovalAndAddition(events)) {
+            refreshTable();
+            return;
+        }
+
+        for (BankEvent event : events) {
+            Integer row = event.type() == BankEvent.Type.ADDED ? null : tableRows.get(event.oldClient().getPassport());
+            switch (event.type()) {
+                case ADDED -> addTableRow(event.newClient());
+                case UPDATED -> {
+                    if (row == null) {
+                        addTableRow(event.newClient());
+                        break;
+                    }
+                    Object[] values = toRow(event.newClient());
+                    for (int column = 0; column < values.length; column++) {
+                        tableModel.setValueAt(values[column], row, column);
+                    }
+                    tableRows.remove(event.oldClient().getPassport());
+                    tableRows.put(event.newClient().getPassport(), row);
+                }
+                case REMOVED -> {
+                    if (row != null) {
+                        removeTableRow(row);
+                    }
+                }
+            }
+        }
+        updateInfoLabel();
+    }
+
+    // Добавление дописывает строку в конец, а клиент со смененным паспортом
+    // остается в Bank на прежнем месте - такой список применяется перестройкой таблицы
+    private static boolean hasRemovalAndAddition(List<BankEvent> events) {
+        boolean removed = false;
+        boolean added = false;
+        for (BankEvent event : events) {
+            removed |= event.type() == BankEvent.Type.REMOVED;
+            added |= event.type() == BankEvent.Type.ADDED;
+        }
+        return removed && added;
+    }
+
+    private ClientType selectedType() {
+        return typeFilter != null ? (ClientType) typeFilter.getSelectedItem() : null;
+    }
+
+    // Выборку по типу делает SQLite по индексу (client_type, deposit_kopecks). Пока очередь
+    // записи не дописана или БД недоступна, БД отстает от bank - тогда фильтруется сам bank
+    // в том же порядке (равные вклады - в порядке добавления).
+    private List<Client> findByType(ClientType type) {
+        if (persistence.flush()) {
+            try {
+                return clientDAO.findByType(type, SEARCH_LIMIT);
+            } catch (SQLException e) {
+                System.err.println("Фильтр по типу выполнен по данным в памяти: " + e.getMessage());
+            }
+        }
+        List<Client> result = new ArrayList<>();
+        for (Client client : bank.getAllClients()) {
+            if (client.getClientType() == type) {
+                result.add(client);
+            }
         }
+        result.sort(Comparator.comparingLong(Client::getDepositKopecks).reversed());
+        return result.size() > SEARCH_LIMIT ? result.subList(0, SEARCH_LIMIT) : result;
+    }
+
+    private void addTableRow(Client client) {
+        tableRows.put(client.getPassport(), tableModel.getRowCount());
+        tableModel.addRow(toRow(client));
+    }
+
+    // Строки ниже удаленной сдвигаются на одну вверх (порядок таблицы - порядок Bank)
+    private void removeTableRow(int row) {
+        tableRows.remove((String) tableModel.getValueAt(row, 0));
+        tableModel.removeRow(row);
+        for (int i = row; i < tableModel.getRowCount(); i++) {
+            tableRows.put((String) tableModel.getValueAt(i, 0), i);
+        }
+    }
+
+    private Object[] toRow(Client client) {
+        return new Object[]{
+                client.getPassport(),
+                client.getName(),
+                client.getType(),
+                client.getDeposit(),
+                client.getBonusStrategy().getDescription(),
+                getBonusDescription(client)
+        };
+    }
+
+    private String getBonusDescription(Client client) {
+        return client.getBonusStrategy().getDetails();
     }
 
     private void updateInfoLabel() {
@@ -376,13 +689,7 @@ public class MainForm extends JFrame {
                 Component[] subComps = ((JPanel) comp).getComponents();
                 for (Component subComp : subComps) {
                     if (subComp instanceof JLabel && ((JLabel) subComp).getText().contains("клиентов")) {
-                        int clientCount = bank.getAllClients().size();
-                        double totalDeposits = bank.getTotalDeposits();
-                        ((JLabel) subComp).setText(String.format(
-                                "Всего клиентов: %d | Общая сумма вкладов: %.2f руб. | Средний вклад: %.2f руб.",
-                                clientCount, totalDeposits,
-                                clientCount > 0 ? totalDeposits / clientCount : 0
-                        ));
+                        updateInfoLabel((JLabel) subComp);
                         return;
                     }
                 }
@@ -391,12 +698,9 @@ public class MainForm extends JFrame {
     }
 
     private void updateInfoLabel(JLabel label) {
-        int clientCount = bank.getAllClients().size();
-        double totalDeposits = bank.getTotalDeposits();
         label.setText(String.format(
                 "Всего клиентов: %d | Общая сумма вкладов: %.2f руб. | Средний вклад: %.2f руб.",
-                clientCount, totalDeposits,
-                clientCount > 0 ? totalDeposits / clientCount : 0
+                bank.getClientCount(), bank.getTotalDeposits(), bank.getAverageDeposit()
         ));
     }
 
@@ -404,41 +708,50 @@ public class MainForm extends JFrame {
         FileUtils.exportToFile(bank, this);
     }
 
+    // CSV читается из БД постранично в порядке таблицы, поэтому очередь записи сначала дописывается
     private void exportToCsv() {
-        FileUtils.exportToCSV(bank, this);
+        if (!writePending(null)) {
+            return;
+        }
+        FileUtils.exportToCSV(clientDAO, bank.getSortOrder(), this);
     }
 
     private void importFromFile() {
-        FileUtils.importFromFile(this, clientDAO, bank);
-        refreshAllData(); // ИЗМЕНИЛИ: полное обновление после импорта
+        // Импорт проверяет дубликаты по БД - в ней должны быть все изменения bank
+        if (!writePending(null)) {
+            return;
+        }
+        // Импорт сам пишет в БД пакетами, поэтому его события в очередь записи не попадают
+        persistence.runPersisted(() -> FileUtils.importFromFile(this, clientDAO, bank));
     }
 
     private void showStatistics() {
-        int clientCount = bank.getAllClients().size();
-        double totalDeposits = bank.getTotalDeposits();
-
-        // Подсчет по типам клиентов
-        int vipCount = 0, pensionerCount = 0, regularCount = 0;
-        double vipTotal = 0, pensionerTotal = 0, regularTotal = 0;
-
-        for (Client client : bank.getAllClients()) {
-            String type = client.getType();
-            double deposit = client.getDeposit();
-
-            switch (type) {
-                case "Вип":
-                    vipCount++;
-                    vipTotal += deposit;
-                    break;
-                case "Пенсионер":
-                    pensionerCount++;
-                    pensionerTotal += deposit;
-                    break;
-                default:
-                    regularCount++;
-                    regularTotal += deposit;
-            }
+        // Агрегаты считает SQLite (COUNT/SUM/MIN/MAX по индексам), поэтому очередь записи
+        // сначала дописывается в БД. Медиана и перцентили - из индекса вкладов Bank.
+        if (!writePending(null)) {
+            return;
         }
+        DepositStatistics total;
+        Map<ClientType, DepositStatistics> byType;
+        List<Client> largest;
+        List<Client> smallest;
+        try {
+            total = clientDAO.getStatistics();
+            byType = clientDAO.getStatisticsByType();
+            largest = clientDAO.findLargestDeposits(STATISTICS_TOP);
+            smallest = total.count() > 0
+                    ? clientDAO.findByDepositRange(total.minKopecks(), total.maxKopecks(), STATISTICS_TOP)
+                    : List.of();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(this, "Ошибка расчета статистики: " + e.getMessage(),
+                    "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        int clientCount = total.count();
+        DepositStatistics vip = byType.get(ClientType.VIP);
+        DepositStatistics pensioner = byType.get(ClientType.PENSIONER);
+        DepositStatistics regular = byType.get(ClientType.REGULAR);
 
         String message = String.format("""
                 📊 СТАТИСТИКА БАНКА
@@ -448,6 +761,13 @@ public class MainForm extends JFrame {
                 • Всего клиентов: %d
                 • Общая сумма вкладов: %.2f руб.
                 • Средний вклад: %.2f руб.
+                • Минимальный вклад: %.2f руб.
+                • Максимальный вклад: %.2f руб.
+                
+                📐 РАСПРЕДЕЛЕНИЕ ВКЛАДОВ:
+                • Медиана: %.2f руб.
+                • 90-й перцентиль: %.2f руб.
+                • 99-й перцентиль: %.2f руб.
                 
                 👥 РАСПРЕДЕЛЕНИЕ ПО ТИПАМ:
                 • VIP клиентов: %d (%.1f%%) - %.2f руб.
@@ -458,17 +778,30 @@ public class MainForm extends JFrame {
                 • Средний VIP вклад: %.2f руб.
                 • Средний пенсионерский вклад: %.2f руб.
                 • Средний обычный вклад: %.2f руб.
-                """,
-                clientCount, totalDeposits,
-                clientCount > 0 ? totalDeposits / clientCount : 0,
-
-                vipCount, clientCount > 0 ? (vipCount * 100.0 / clientCount) : 0, vipTotal,
-                pensionerCount, clientCount > 0 ? (pensionerCount * 100.0 / clientCount) : 0, pensionerTotal,
-                regularCount, clientCount > 0 ? (regularCount * 100.0 / clientCount) : 0, regularTotal,
-
-                vipCount > 0 ? vipTotal / vipCount : 0,
-                pensionerCount > 0 ? pensionerTotal / pensionerCount : 0,
-                regularCount > 0 ? regularTotal / regularCount : 0
+                
+                🏆 КРУПНЕЙШИЕ ВКЛАДЫ:
+                %s
+                🔻 НАИМЕНЬШИЕ ВКЛАДЫ:
+                %s""",
+                clientCount, total.getTotal(),
+                total.getAverage(),
+                Money.toRubles(total.minKopecks()),
+                Money.toRubles(total.maxKopecks()),
+
+                bank.getMedianDeposit(),
+                bank.getDepositPercentile(90),
+                bank.getDepositPercentile(99),
+
+                vip.count(), clientCount > 0 ? (vip.count() * 100.0 / clientCount) : 0, vip.getTotal(),
+                pensioner.count(), clientCount > 0 ? (pensioner.count() * 100.0 / clientCount) : 0, pensioner.getTotal(),
+                regular.count(), clientCount > 0 ? (regular.count() * 100.0 / clientCount) : 0, regular.getTotal(),
+
+                vip.getAverage(),
+                pensioner.getAverage(),
+                regular.getAverage(),
+
+                formatDeposits(largest),
+                formatDeposits(smallest)
         );
 
         JTextArea textArea = new JTextArea(message);
@@ -482,49 +815,150 @@ public class MainForm extends JFrame {
                 "Статистика банка", JOptionPane.INFORMATION_MESSAGE);
     }
 
-    public void addOrUpdateClient(Client client, boolean isNew) {
+    private static String formatDeposits(List<Client> clients) {
+        if (clients.isEmpty()) {
+            return "• нет клиентов\n";
+        }
+        StringBuilder result = new StringBuilder();
+        for (Client client : clients) {
+            result.append(String.format("• %s (%s): %.2f руб.%n", client.getName(), client.getPassport(),
+                    client.getDeposit()));
+        }
+        return result.toString();
+    }
+
+    // Новые ставки применяются ко всем VIP и пенсионерам: пересчет идет в фоне,
+    // таблица обновляется после записи в БД
+    private void changeBonusRates() {
+        JTextField vipField = new JTextField(
+                BigDecimal.valueOf(BonusRegistry.getVipPercentage()).movePointRight(2).stripTrailingZeros().toPlainString());
+        JTextField pensionerField = new JTextField(Money.format(BonusRegistry.getPensionerBonus()));
+
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        panel.add(new JLabel("Бонус VIP, %:"));
+        panel.add(vipField);
+        panel.add(new JLabel("Бонус пенсионера, руб.:"));
+        panel.add(pensionerField);
+
+        int answer = JOptionPane.showConfirmDialog(this, panel, "Ставки бонусов",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (answer != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        double vipPercentage;
+        long pensionerBonus;
         try {
-            if (isNew) {
-                // Проверяем уникальность паспорта
-                if (clientDAO.clientExists(client.getPassport())) {
-                    JOptionPane.showMessageDialog(this,
-                            "Клиент с паспортом " + client.getPassport() + " уже существует!",
-                            "Ошибка", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-                clientDAO.saveClient(client);
-                bank.addClient(client);
+            vipPercentage = Double.parseDouble(vipField.getText().trim().replace(',', '.')) / 100;
+            pensionerBonus = Money.parse(pensionerField.getText());
+            if (vipPercentage < 0 || vipPercentage > 1 || pensionerBonus < 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Неверное значение ставки", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
-                JOptionPane.showMessageDialog(this,
-                        "Новый клиент успешно добавлен:\n" +
-                                client.getName() + " (" + client.getPassport() + ")",
-                        "Успех", JOptionPane.INFORMATION_MESSAGE);
+        // Пересчет сравнивает снимок bank со строками БД: незаписанные изменения сначала в БД
+        if (!writePending(null)) {
+            return;
+        }
 
-            } else {
-                clientDAO.updateClient(client);
-                bank.updateClient(client.getPassport(), client);
+        // Ставки сохраняются в БД до пересчета: после перезапуска они не вернутся к значениям по умолчанию
+        try {
+            settingsDAO.saveBonusRates(vipPercentage, pensionerBonus);
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(this, "Не удалось сохранить ставки: " + e.getMessage(),
+                    "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        BonusRegistry.setVipPercentage(vipPercentage);
+        BonusRegistry.setPensionerBonus(pensionerBonus);
 
+        // Снимок не меняется вместе с bank - его можно отдать в другой поток
+        List<Client> snapshot = bank.getAllClients();
+        ProgressMonitor monitor = new ProgressMonitor(this, "Пересчет вкладов...", null, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+
+        SwingWorker<RerateJob.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected RerateJob.Result doInBackground() throws Exception {
+                return new RerateJob().run(snapshot, (processed, total) ->
+                        setProgress(total > 0 ? processed * 100 / total : 100));
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    RerateJob.Result result = get();
+                    // RerateJob уже записал новые суммы в БД. Клиент, которого за время пересчета
+                    // изменили или удалили в bank, не трогаем: его правка новее пересчета
+                    persistence.runPersisted(() -> {
+                        bank.beginBatch();
+                        try {
+                            for (int i = 0; i < result.count(); i++) {
+                                Client replaced = result.replaced().get(i);
+                                if (bank.getClientByPassport(replaced.getPassport()) == replaced) {
+                                    bank.updateClient(replaced.getPassport(), result.clients().get(i));
+                                }
+                            }
+                        } finally {
+                            bank.endBatch();
+                        }
+                    });
+                    JOptionPane.showMessageDialog(MainForm.this,
+                            String.format("Пересчитано клиентов: %d\nПропущено (изменены во время пересчета): %d\n" +
+                                            "Время: %.2f с\nСкорость: %.0f клиентов/с",
+                                    result.count(), result.skipped(), result.elapsedNanos() / 1e9,
+                                    result.clientsPerSecond()),
+                            "Ставки бонусов", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    // Часть пакетов могла быть записана - перечитываем данные из БД
+                    JOptionPane.showMessageDialog(MainForm.this, "Ошибка пересчета: " + e.getMessage(),
+                            "Ошибка", JOptionPane.ERROR_MESSAGE);
+                    refreshAllData();
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                monitor.setProgress((Integer) evt.getNewValue());
+            }
+        });
+        worker.execute();
+    }
+
+    // Изменения применяются к bank сразу, в БД их пишет очередь отложенной записи
+    public void addOrUpdateClient(Client client, boolean isNew) {
+        if (isNew) {
+            // Проверяем уникальность паспорта
+            if (!bank.addClient(client)) {
                 JOptionPane.showMessageDialog(this,
-                        "Данные клиента обновлены:\n" +
-                                client.getName() + " (" + client.getPassport() + ")",
-                        "Успех", JOptionPane.INFORMATION_MESSAGE);
+                        "Клиент с паспортом " + client.getPassport() + " уже существует!",
+                        "Ошибка", JOptionPane.ERROR_MESSAGE);
+                return;
             }
 
-            refreshTable();
+            JOptionPane.showMessageDialog(this,
+                    "Новый клиент успешно добавлен:\n" +
+                            client.getName() + " (" + client.getPassport() + ")",
+                    "Успех", JOptionPane.INFORMATION_MESSAGE);
+
+        } else {
+            bank.updateClient(client.getPassport(), client);
 
-        } catch (SQLException e) {
             JOptionPane.showMessageDialog(this,
-                    "Ошибка сохранения в БД: " + e.getMessage(),
-                    "Ошибка", JOptionPane.ERROR_MESSAGE);
+                    "Данные клиента обновлены:\n" +
+                            client.getName() + " (" + client.getPassport() + ")",
+                    "Успех", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
+    // bank содержит все данные БД плюс еще не записанные изменения,
+    // поэтому проверка идет по нему, а не по отстающей БД
     public boolean clientExistsInDatabase(String passport) {
-        try {
-            return clientDAO.clientExists(passport);
-        } catch (SQLException e) {
-            return false;
-        }
+        return bank.getClientByPassport(passport) != null;
     }
 
     public static void main(String[] args) {
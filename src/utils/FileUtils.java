@@ -1,9 +1,15 @@
 package utils;
 
 import models.*;
+import database.BatchResult;
 import database.ClientDAO;
+import database.DatabaseConnection;
+import database.StorageProfile;
 import javax.swing.*;
 import java.io.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.*;
 
 public class FileUtils {
@@ -19,14 +25,17 @@ public class FileUtils {
                 file = new File(file.getAbsolutePath() + ".txt");
             }
 
+            // Один снимок на весь экспорт: заголовок и список согласованы
+            java.util.List<Client> clients = bank.getAllClients();
+
             try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
                 writer.println("=== ЭКСПОРТ ДАННЫХ ИЗ БАНКОВСКОЙ СИСТЕМЫ ===");
                 writer.println("Дата экспорта: " + new java.util.Date());
-                writer.println("Всего клиентов: " + bank.getAllClients().size());
-                writer.println("Общая сумма вкладов: " + bank.getTotalDeposits() + " руб.");
+                writer.println("Всего клиентов: " + clients.size());
+                writer.println("Общая сумма вкладов: " + Money.format(bank.getTotalDepositsKopecks()) + " руб.");
                 writer.println("=============================================\n");
 
-                for (Client client : bank.getAllClients()) {
+                for (Client client : clients) {
                     writer.println(client.getClientInfo());
                     writer.println("---");
                 }
@@ -53,6 +62,8 @@ public class FileUtils {
             int errorCount = 0;
             StringBuilder errors = new StringBuilder();
 
+            // Сначала разбираем весь файл, затем пишем клиентов в БД пакетами
+            List<Client> parsed = new ArrayList<>();
             try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
                 String line;
                 StringBuilder clientBlock = new StringBuilder();
@@ -73,24 +84,7 @@ public class FileUtils {
 
                             Client client = parseClientData(clientBlock.toString());
                             if (client != null) {
-                                try {
-                                    // Проверяем уникальность паспорта
-                                    if (!clientDAO.clientExists(client.getPassport())) {
-                                        clientDAO.saveClient(client);
-                                        bank.addClient(client);
-                                        importedCount++;
-                                        System.out.println("✅ Импортирован: " + client.getName() +
-                                                " (паспорт: " + client.getPassport() + ")");
-                                    } else {
-                                        errorCount++;
-                                        errors.append("• Паспорт уже существует: ").append(client.getPassport()).append("\n");
-                                        System.out.println("❌ Паспорт уже существует: " + client.getPassport());
-                                    }
-                                } catch (Exception e) {
-                                    errorCount++;
-                                    errors.append("• Ошибка БД: ").append(e.getMessage()).append("\n");
-                                    System.out.println("❌ Ошибка БД: " + e.getMessage());
-                                }
+                                parsed.add(client);
                             } else {
                                 errorCount++;
                                 errors.append("• Не удалось распознать данные клиента\n");
@@ -116,37 +110,65 @@ public class FileUtils {
 
                     Client client = parseClientData(clientBlock.toString());
                     if (client != null) {
-                        try {
-                            if (!clientDAO.clientExists(client.getPassport())) {
-                                clientDAO.saveClient(client);
-                                bank.addClient(client);
-                                importedCount++;
-                                System.out.println("✅ Импортирован (последний): " + client.getName());
-                            } else {
-                                errorCount++;
-                                System.out.println("❌ Паспорт уже существует (последний): " + client.getPassport());
-                            }
-                        } catch (Exception e) {
-                            errorCount++;
-                            System.out.println("❌ Ошибка БД (последний): " + e.getMessage());
-                        }
+                        parsed.add(client);
                     } else {
                         errorCount++;
                         System.out.println("❌ Не удалось распознать данные (последний)");
                     }
                 }
 
-                System.out.println("=== КОНЕЦ ИМПОРТА ===");
-                System.out.println("Импортировано: " + importedCount + ", Ошибок: " + errorCount);
-
-                // Показываем результат импорта
-                showImportResult(parent, importedCount, errorCount, errors.toString());
-
             } catch (IOException e) {
                 JOptionPane.showMessageDialog(parent,
                         "Ошибка при чтении файла: " + e.getMessage(),
                         "Ошибка", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            // Паспорта, уже существующие в БД или повторяющиеся в файле, пропускаются.
+            // Запись идет в профиле массовой загрузки
+            BatchResult result;
+            try {
+                result = DatabaseConnection.withProfile(StorageProfile.BULK_LOAD, () -> clientDAO.saveAll(parsed));
+            } catch (SQLException e) {
+                JOptionPane.showMessageDialog(parent,
+                        "Ошибка БД при импорте: " + e.getMessage(),
+                        "Ошибка", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            // Все добавления в bank уходят подписчикам одним пакетом
+            bank.beginBatch();
+            try {
+                for (int i = 0; i < parsed.size(); i++) {
+                    Client client = parsed.get(i);
+                    BatchResult.Outcome outcome = result.get(i);
+                    // Строка записана, но паспорт уже есть в bank (еще не записанный клиент) - тоже дубликат
+                    if (outcome == BatchResult.Outcome.APPLIED && !bank.addClient(client)) {
+                        outcome = BatchResult.Outcome.DUPLICATE;
+                    }
+                    switch (outcome) {
+                        case APPLIED -> importedCount++;
+                        case DUPLICATE -> {
+                            errorCount++;
+                            errors.append("• Паспорт уже существует: ").append(client.getPassport()).append("\n");
+                            System.out.println("❌ Паспорт уже существует: " + client.getPassport());
+                        }
+                        default -> errorCount++;
+                    }
+                }
+            } finally {
+                bank.endBatch();
             }
+            if (result.getError() != null) {
+                errors.append("• Ошибка БД: ").append(result.getError().getMessage()).append("\n");
+                System.out.println("❌ Ошибка БД: " + result.getError().getMessage());
+            }
+
+            System.out.println("=== КОНЕЦ ИМПОРТА ===");
+            System.out.println("Импортировано: " + importedCount + ", Ошибок: " + errorCount);
+
+            // Показываем результат импорта
+            showImportResult(parent, importedCount, errorCount, errors.toString());
         }
     }
 
@@ -159,7 +181,7 @@ public class FileUtils {
             String[] lines = data.split("\n");
             String name = "";
             String passport = "";
-            double deposit = 0;
+            long deposit = 0; // в копейках
             String type = "Обычный клиент";
 
             for (String line : lines) {
@@ -233,10 +255,10 @@ public class FileUtils {
                         String numStr = word.replaceAll("[^\\d.,]", "").replace(',', '.');
                         if (!numStr.isEmpty() && numStr.matches("[\\d.]+")) {
                             try {
-                                double candidate = Double.parseDouble(numStr);
-                                if (candidate > 0 && candidate < 1000000000) {
+                                long candidate = Money.parse(numStr);
+                                if (candidate > 0 && candidate < 1000000000 * Money.KOPECKS_PER_RUBLE) {
                                     deposit = candidate;
-                                    System.out.println("Найдена сумма: " + deposit + " в строке: '" + line + "'");
+                                    System.out.println("Найдена сумма: " + Money.format(deposit) + " в строке: '" + line + "'");
                                     break;
                                 }
                             } catch (NumberFormatException e) {
@@ -251,7 +273,7 @@ public class FileUtils {
             System.out.println("\n=== РЕЗУЛЬТАТ ПАРСИНГА ===");
             System.out.println("Имя: " + name + " (валидно: " + (!name.isEmpty()) + ")");
             System.out.println("Паспорт: " + passport + " (валидно: " + (passport.length() == 10) + ")");
-            System.out.println("Сумма: " + deposit + " (валидно: " + (deposit > 0) + ")");
+            System.out.println("Сумма: " + Money.format(deposit) + " (валидно: " + (deposit > 0) + ")");
             System.out.println("Тип: " + type);
 
             if (name.isEmpty()) {
@@ -337,7 +359,13 @@ public class FileUtils {
                 errors > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
     }
 
-    public static void exportToCSV(Bank bank, JFrame parent) {
+    // Строк на страницу при выгрузке CSV из БД
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    // Выгрузка из БД в порядке order постранично (по ключу сортировки, без OFFSET): в памяти
+    // одна страница, а не вся таблица. INSERTION - порядок строк таблицы, одним проходом.
+    // Вызывающий код должен дописать в БД отложенные изменения.
+    public static void exportToCSV(ClientDAO clientDAO, models.SortOrder order, JFrame parent) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Экспорт в CSV");
 
@@ -348,26 +376,46 @@ public class FileUtils {
             }
 
             try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("Паспорт;ФИО;Тип клиента;Вклад;Бонус");
-
-                for (Client client : bank.getAllClients()) {
-                    writer.println(String.format("%s;%s;%s;%.2f;%s",
-                            client.getPassport(),
-                            client.getName(),
-                            client.getType(),
-                            client.getDeposit(),
-                            client.getBonusStrategy().getDescription()));
-                }
+                writeCsv(clientDAO, order, writer);
 
                 JOptionPane.showMessageDialog(parent,
                         "Данные успешно экспортированы в CSV файл",
                         "Экспорт CSV", JOptionPane.INFORMATION_MESSAGE);
 
-            } catch (IOException e) {
+            } catch (IOException | SQLException e) {
                 JOptionPane.showMessageDialog(parent,
                         "Ошибка экспорта: " + e.getMessage(),
                         "Ошибка", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
+
+    static void writeCsv(ClientDAO clientDAO, models.SortOrder order, PrintWriter writer) throws SQLException {
+        writer.println("Паспорт;ФИО;Тип клиента;Вклад;Бонус");
+        if (order == models.SortOrder.INSERTION) {
+            clientDAO.forEachClient(client -> writeCsvRow(writer, client));
+            return;
+        }
+
+        Client last = null;
+        List<Client> page;
+        do {
+            page = clientDAO.getClientsPage(order, last, EXPORT_PAGE_SIZE);
+            for (Client client : page) {
+                writeCsvRow(writer, client);
+            }
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+        } while (page.size() == EXPORT_PAGE_SIZE);
+    }
+
+    private static void writeCsvRow(PrintWriter writer, Client client) {
+        writer.println(String.format("%s;%s;%s;%s;%s",
+                client.getPassport(),
+                client.getName(),
+                client.getType(),
+                Money.format(client.getDepositKopecks()),
+                client.getBonusStrategy().getDescription()));
+    }
 }
\ No newline at end of file
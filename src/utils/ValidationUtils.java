@@ -1,8 +1,11 @@
 package utils;
 
+import models.Money;
+
 import java.util.regex.Pattern;
 
 public class ValidationUtils {
+    private static final long MAX_DEPOSIT_KOPECKS = 1000000000 * Money.KOPECKS_PER_RUBLE; // 1 млрд руб.
 
     public static boolean isValidPassport(String passport) {
         if (passport == null) return false;
@@ -26,19 +29,16 @@ public class ValidationUtils {
             return false;
         }
 
-        // Заменяем запятую на точку
-        cleanStr = cleanStr.replace(',', '.');
-
         try {
-            double deposit = Double.parseDouble(cleanStr);
-            return deposit > 0 && deposit <= 1000000000; // Макс 1 млрд
+            long deposit = Money.parse(cleanStr);
+            return deposit > 0 && deposit <= MAX_DEPOSIT_KOPECKS;
         } catch (NumberFormatException e) {
             return false;
         }
     }
 
-    // Парсинг суммы с обработкой запятых
-    public static double parseDeposit(String depositStr) throws NumberFormatException {
+    // Парсинг суммы с обработкой запятых, результат в копейках
+    public static long parseDepositKopecks(String depositStr) throws NumberFormatException {
         if (depositStr == null || depositStr.trim().isEmpty()) {
             throw new NumberFormatException("Пустая строка");
         }
@@ -48,7 +48,7 @@ public class ValidationUtils {
         // Удаляем все нецифровые символы, кроме точки
         cleanStr = cleanStr.replaceAll("[^\\d.]", "");
 
-        return Double.parseDouble(cleanStr);
+        return Money.parse(cleanStr);
     }
 
     // Проверка на валидные символы (только цифры, точка, запятая)
@@ -111,21 +111,21 @@ public class ValidationUtils {
             return "Сумма может содержать только цифры, точку или запятую";
         }
 
+        if (!isValidDecimalPlaces(depositStr, 2)) {
+            return "Максимум 2 знака после запятой";
+        }
+
         try {
-            double deposit = parseDeposit(depositStr);
+            long deposit = parseDepositKopecks(depositStr);
 
             if (deposit <= 0) {
                 return "Сумма должна быть больше 0";
             }
 
-            if (deposit > 1000000000) {
+            if (deposit > MAX_DEPOSIT_KOPECKS) {
                 return "Сумма слишком велика (максимум 1 000 000 000 руб.)";
             }
 
-            if (!isValidDecimalPlaces(depositStr, 2)) {
-                return "Максимум 2 знака после запятой";
-            }
-
             return null; // Ошибок нет
 
         } catch (NumberFormatException e) {
@@ -0,0 +1,120 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupContainerTest {
+    @TempDir
+    Path directory;
+
+    // Сжимаемый блок, несжимаемый (хранится как есть) и неполный последний блок
+    private Path createSource() throws IOException {
+        int size = BackupContainer.BLOCK_SIZE * 2 + BackupContainer.BLOCK_SIZE / 2;
+        byte[] data = new byte[size];
+        byte[] text = "Иванов Иван Иванович;1500.50;Вип\n".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < BackupContainer.BLOCK_SIZE; i++) {
+            data[i] = text[i % text.length];
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = BackupContainer.BLOCK_SIZE; i < size; i++) {
+            data[i] = (byte) random.nextInt(256);
+        }
+        Path source = directory.resolve("bank.db");
+        Files.write(source, data);
+        return source;
+    }
+
+    private Path writeContainer(Path source) throws IOException {
+        Path container = directory.resolve("copy" + BackupContainer.EXTENSION);
+        BackupContainer.write(source, container, Map.of("content", "sqlite3"), null);
+        return container;
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        Path source = createSource();
+        Path container = directory.resolve("copy" + BackupContainer.EXTENSION);
+        long[] progress = new long[2];
+
+        BackupContainer.Info written = BackupContainer.write(source, container, Map.of("content", "sqlite3"),
+                (processed, total) -> {
+                    progress[0] = processed;
+                    progress[1] = total;
+                });
+        Path restored = directory.resolve("restored.db");
+        BackupContainer.Info extracted = BackupContainer.extract(container, restored, null);
+
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(restored));
+        assertEquals(3, written.blockCount());
+        assertEquals(Files.size(source), progress[0]);
+        assertEquals(progress[0], progress[1]);
+        assertTrue(written.compressedSize() < written.originalSize());
+        assertEquals("sqlite3", extracted.manifest().get("content"));
+        assertEquals(written.originalSize(), extracted.originalSize());
+        assertEquals(written.originalSize(), BackupContainer.check(container).originalSize());
+        assertFalse(Files.exists(Paths.get(container + ".part")));
+    }
+
+    @Test
+    void emptyFileRoundTrip() throws IOException {
+        Path source = directory.resolve("empty.db");
+        Files.createFile(source);
+        Path container = writeContainer(source);
+        Path restored = directory.resolve("restored.db");
+
+        BackupContainer.Info info = BackupContainer.extract(container, restored, null);
+
+        assertEquals(0, info.blockCount());
+        assertEquals(0, Files.size(restored));
+    }
+
+    // Поврежденный байт в данных любого блока находится, восстановленный файл не создается
+    @Test
+    void detectsCorruptedBlock() throws IOException {
+        Path container = writeContainer(createSource());
+        byte[] bytes = Files.readAllBytes(container);
+        for (int position : new int[]{bytes.length / 4, bytes.length / 2, bytes.length * 3 / 4}) {
+            byte[] corrupted = bytes.clone();
+            corrupted[position] ^= 0x10;
+            Files.write(container, corrupted);
+            Path restored = directory.resolve("restored.db");
+
+            IOException error = assertThrows(IOException.class, () -> BackupContainer.extract(container, restored, null));
+            assertTrue(error.getMessage().contains("повреждена"), error.getMessage());
+            assertFalse(Files.exists(restored));
+            assertFalse(Files.exists(Paths.get(restored.toAbsolutePath() + ".part")));
+        }
+    }
+
+    @Test
+    void detectsTruncatedFile() throws IOException {
+        Path container = writeContainer(createSource());
+        byte[] bytes = Files.readAllBytes(container);
+        for (int length : new int[]{bytes.length - 1, bytes.length / 2, 16, 0}) {
+            Files.write(container, Arrays.copyOf(bytes, length));
+
+            assertThrows(IOException.class, () -> BackupContainer.check(container), "длина " + length);
+            assertThrows(IOException.class, () -> BackupContainer.extract(container, directory.resolve("restored.db"), null));
+        }
+    }
+
+    @Test
+    void rejectsFileOfOtherFormat() throws IOException {
+        Path source = createSource();
+        Path notContainer = directory.resolve("plain" + BackupContainer.EXTENSION);
+        Files.copy(source, notContainer);
+
+        assertThrows(IOException.class, () -> BackupContainer.check(notContainer));
+    }
+}
@@ -0,0 +1,548 @@
+package database;
+
+import models.Bank;
+import models.BonusRegistry;
+import models.Client;
+import models.ClientType;
+import models.ColumnarClientStore;
+import models.Money;
+import models.SortOrder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientDAOTest {
+    @TempDir
+    Path directory;
+    private String url;
+    private ClientDAO dao;
+
+    @BeforeEach
+    void setUp() {
+        url = "jdbc:sqlite:" + directory.resolve("bank.db");
+        DatabaseConnection.setUrl(url);
+        DatabaseConnection.initializeDatabase();
+        dao = new ClientDAO();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.closeConnection();
+    }
+
+    private static Client client(String name, String passport, long deposit) {
+        return ClientType.REGULAR.createClient(name, passport, deposit);
+    }
+
+    // Отдельное соединение в обход DatabaseConnection - как запись другого процесса
+    private void writeFromOutside(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            DatabaseConnection.registerFunctions(conn);
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    @Test
+    void writeThroughOtherDaoIsSeenImmediately() throws SQLException {
+        ClientDAO other = new ClientDAO();
+        dao.saveClient(client("Иванов", "1111", 10_000));
+        assertEquals(10_000, dao.getClientByPassport("1111").getDepositKopecks());
+        assertFalse(dao.clientExists("2222"));
+
+        other.updateClient(client("Иванов", "1111", 25_000));
+        other.saveClient(client("Петров", "2222", 5_000));
+
+        assertEquals(25_000, dao.getClientByPassport("1111").getDepositKopecks());
+        assertTrue(dao.clientExists("2222"));
+    }
+
+    @Test
+    void externalWriteIsSeenAfterSyncInterval() throws Exception {
+        dao.saveClient(client("Иванов", "1111", 10_000));
+        assertEquals(10_000, dao.getClientByPassport("1111").getDepositKopecks());
+
+        writeFromOutside("UPDATE clients SET deposit_kopecks = 30000 WHERE passport = '1111'");
+        // В пределах интервала попадание не обращается к БД
+        assertEquals(10_000, dao.getClientByPassport("1111").getDepositKopecks());
+
+        Thread.sleep(ClientCache.SYNC_INTERVAL_MILLIS + 20);
+        assertEquals(30_000, dao.getClientByPassport("1111").getDepositKopecks());
+    }
+
+    @Test
+    void externalDeleteIsSeenAfterSyncInterval() throws Exception {
+        dao.saveClient(client("Иванов", "1111", 10_000));
+        assertTrue(dao.clientExists("1111"));
+
+        writeFromOutside("DELETE FROM clients WHERE passport = '1111'");
+        Thread.sleep(ClientCache.SYNC_INTERVAL_MILLIS + 20);
+
+        assertFalse(dao.clientExists("1111"));
+        assertNull(dao.getClientByPassport("1111"));
+    }
+
+    @Test
+    void noteLocalWriteForcesSync() throws SQLException {
+        Client client = client("Иванов", "1111", 10_000);
+        dao.saveClient(client);
+        assertEquals(10_000, dao.getClientByPassport("1111").getDepositKopecks());
+
+        // Так отмечает свою запись RerateJob, пишущий в обход ClientDAO
+        writeFromOutside("UPDATE clients SET deposit_kopecks = 12000 WHERE passport = '1111'");
+        ClientCache.noteLocalWrite();
+        assertEquals(12_000, dao.getClientByPassport("1111").getDepositKopecks());
+    }
+
+    @Test
+    void loadAllIntoKeepsStoredDepositsAndBonuses() throws SQLException {
+        BonusRegistry.setVipPercentage(0.2);
+        try {
+            dao.saveClient(ClientType.VIP.createClient("Петрова", "0000000002", 100_000));
+        } finally {
+            BonusRegistry.setVipPercentage(BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+        }
+        dao.saveClient(ClientType.PENSIONER.createClient("Сидоров", "0000000003", 50_000));
+
+        ColumnarClientStore store = new ColumnarClientStore();
+        dao.loadAllInto(store);
+
+        assertEquals(2, store.size());
+        for (Client stored : dao.getAllClients()) {
+            Client loaded = store.getClientByPassport(stored.getPassport());
+            assertEquals(stored.getName(), loaded.getName());
+            assertEquals(stored.getDepositKopecks(), loaded.getDepositKopecks());
+            assertEquals(stored.getClientType(), loaded.getClientType());
+            assertEquals(stored.getBonusStrategy(), loaded.getBonusStrategy());
+        }
+    }
+
+    // Bank, изменения которого пишутся в БД так же, как в MainForm (через очередь записи)
+    private Bank mirroredBank() {
+        Bank bank = new Bank();
+        WriteBehindQueue queue = new WriteBehindQueue(dao, 60_000);
+        bank.addListener(queue);
+        ClientType[] types = ClientType.values();
+        for (int i = 0; i < 60; i++) {
+            bank.addClient(types[i % types.length].createClient("Клиент " + i, String.format("%010d", i),
+                    10_000 + i * 1_000));
+        }
+        for (int i = 0; i < 60; i += 7) {
+            bank.removeClient(String.format("%010d", i));
+        }
+        for (int i = 3; i < 60; i += 11) {
+            String passport = String.format("%010d", i);
+            bank.updateClient(passport, ClientType.VIP.createClient("Клиент " + i, passport, 500_000 + i));
+        }
+        assertTrue(queue.flush());
+        queue.close();
+        return bank;
+    }
+
+    private static List<String> passports(List<Client> clients) {
+        return clients.stream().map(Client::getPassport).toList();
+    }
+
+    @Test
+    void sqlAggregatesMatchBank() throws SQLException {
+        Bank bank = mirroredBank();
+
+        DepositStatistics total = dao.getStatistics();
+        assertEquals(bank.getClientCount(), total.count());
+        assertEquals(bank.getTotalDepositsKopecks(), total.totalKopecks());
+        assertEquals(bank.getMinDeposit(), Money.toRubles(total.minKopecks()));
+        assertEquals(bank.getMaxDeposit(), Money.toRubles(total.maxKopecks()));
+
+        Map<ClientType, DepositStatistics> byType = dao.getStatisticsByType();
+        DepositStatistics merged = DepositStatistics.EMPTY;
+        for (ClientType type : ClientType.values()) {
+            DepositStatistics statistics = byType.get(type);
+            assertEquals(bank.getClientCount(type), statistics.count(), type.getTitle());
+            assertEquals(bank.getTotalDepositsKopecks(type), statistics.totalKopecks(), type.getTitle());
+            merged = merged.merge(statistics);
+        }
+        assertEquals(total, merged);
+    }
+
+    @Test
+    void emptyTableGivesEmptyStatistics() throws SQLException {
+        assertEquals(DepositStatistics.EMPTY, dao.getStatistics());
+        for (DepositStatistics statistics : dao.getStatisticsByType().values()) {
+            assertEquals(DepositStatistics.EMPTY, statistics);
+        }
+    }
+
+    @Test
+    void sqlSelectionsMatchBank() throws SQLException {
+        Bank bank = mirroredBank();
+        List<Client> byDeposit = new ArrayList<>(bank.getAllClients());
+        byDeposit.sort(Comparator.comparingLong(Client::getDepositKopecks).thenComparing(Client::getPassport));
+
+        for (ClientType type : ClientType.values()) {
+            List<Client> expected = byDeposit.stream().filter(client -> client.getClientType() == type).toList();
+            List<String> descending = new ArrayList<>(passports(expected));
+            Collections.reverse(descending);
+            assertEquals(descending, passports(dao.findByType(type, 1000)), type.getTitle());
+            assertEquals(descending.subList(0, 3), passports(dao.findByType(type, 3)), type.getTitle());
+        }
+
+        List<String> largest = new ArrayList<>(passports(byDeposit));
+        Collections.reverse(largest);
+        assertEquals(largest.subList(0, 5), passports(dao.findLargestDeposits(5)));
+
+        long min = 20_000;
+        long max = 40_000;
+        List<String> inRange = passports(byDeposit.stream()
+                .filter(client -> client.getDepositKopecks() >= min && client.getDepositKopecks() <= max).toList());
+        assertEquals(inRange, passports(dao.findByDepositRange(min, max, 1000)));
+        assertEquals(bank.countClientsWithDepositBetween(Money.toRubles(min), Money.toRubles(max)),
+                inRange.size());
+
+        assertThrows(IllegalArgumentException.class, () -> dao.findLargestDeposits(0));
+    }
+
+    // Кириллица и латиница в разном регистре, одинаковые имена и вклады (равные ключи
+    // упорядочивает паспорт) - так, чтобы группы равных ключей пересекали границы страниц
+    private Bank pagedBank() {
+        String[] names = {"иванов", "Иванов", "ИВАНОВ", "Ёлкин", "ёлкин", "Елкин", "ivanov", "Ivanov",
+                "яковлев", "Яковлев", "Abc", "abc", "Петров", "петров", "Иванов", "Жуков"};
+        long[] deposits = {10_000, 20_000, 10_000, 30_000, 20_000};
+        ClientType[] types = ClientType.values();
+        Bank bank = new Bank();
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < names.length * 2; i++) {
+            // Паспорта не по порядку добавления
+            String passport = String.format("%010d", (i * 7919) % 1000);
+            Client client = types[i % types.length].createClient(names[i % names.length], passport,
+                    deposits[i % deposits.length]);
+            assertTrue(bank.addClient(client));
+            clients.add(client);
+        }
+        assertNull(dao.saveAll(clients).getError());
+        return bank;
+    }
+
+    private static List<String> bankPages(Bank bank, SortOrder order, int size) {
+        List<String> result = new ArrayList<>();
+        Client last = null;
+        List<Client> page;
+        do {
+            page = bank.getClientsPage(order, last, size);
+            assertTrue(page.size() <= size);
+            result.addAll(passports(page));
+            last = page.isEmpty() ? last : page.get(page.size() - 1);
+        } while (page.size() == size);
+        return result;
+    }
+
+    private List<String> daoPages(SortOrder order, int size) throws SQLException {
+        List<String> result = new ArrayList<>();
+        Client last = null;
+        List<Client> page;
+        do {
+            page = dao.getClientsPage(order, last, size);
+            assertTrue(page.size() <= size);
+            result.addAll(passports(page));
+            last = page.isEmpty() ? last : page.get(page.size() - 1);
+        } while (page.size() == size);
+        return result;
+    }
+
+    @Test
+    void keysetPagesMatchBankOrder() throws SQLException {
+        Bank bank = pagedBank();
+
+        for (SortOrder order : List.of(SortOrder.NAME, SortOrder.DEPOSIT, SortOrder.TYPE)) {
+            bank.setSortOrder(order);
+            List<String> expected = passports(bank.getAllClients());
+            assertEquals(bank.getClientCount(), expected.size());
+            for (int size : new int[]{1, 2, 3, 5, 7, 100}) {
+                String message = order + ", страница " + size;
+                assertEquals(expected, bankPages(bank, order, size), message);
+                assertEquals(expected, daoPages(order, size), message);
+            }
+        }
+    }
+
+    // Регистр кириллицы не влияет на порядок: все "Иванов" идут подряд, внутри - по паспорту
+    @Test
+    void namePagesIgnoreCyrillicCase() throws SQLException {
+        pagedBank();
+        List<Client> all = dao.getClientsPage(SortOrder.NAME, null, 1000);
+
+        List<String> ivanovs = new ArrayList<>();
+        int first = -1;
+        for (int i = 0; i < all.size(); i++) {
+            if (all.get(i).getName().equalsIgnoreCase("иванов")) {
+                first = first < 0 ? i : first;
+                ivanovs.add(all.get(i).getPassport());
+            }
+        }
+        assertEquals(8, ivanovs.size());
+        assertEquals(ivanovs, passports(all.subList(first, first + ivanovs.size())));
+        List<String> sorted = new ArrayList<>(ivanovs);
+        Collections.sort(sorted);
+        assertEquals(sorted, ivanovs);
+    }
+
+    @Test
+    void pagingRequiresOrderedKey() {
+        Bank bank = new Bank();
+        assertThrows(IllegalArgumentException.class, () -> dao.getClientsPage(SortOrder.INSERTION, null, 10));
+        assertThrows(IllegalArgumentException.class, () -> bank.getClientsPage(SortOrder.INSERTION, (Client) null, 10));
+        assertThrows(IllegalArgumentException.class, () -> dao.getClientsPage(SortOrder.NAME, null, 0));
+    }
+
+    private static List<Client> numbered(int from, int to, long deposit) {
+        List<Client> clients = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            clients.add(client("Клиент " + i, String.format("%010d", i), deposit + i));
+        }
+        return clients;
+    }
+
+    // Пакеты по 3 строки: исходы строк не зависят от границ пакетов
+    @Test
+    void batchOperationsReportOutcomePerRow() throws SQLException {
+        ClientDAO batched = new ClientDAO(3);
+        assertNull(batched.saveAll(numbered(0, 4, 1_000)).getError());
+
+        List<Client> insert = new ArrayList<>(numbered(2, 8, 2_000));
+        insert.add(client("Повтор", String.format("%010d", 6), 1));
+        BatchResult saved = batched.saveAll(insert);
+        assertTrue(saved.isComplete());
+        assertEquals(List.of(BatchResult.Outcome.DUPLICATE, BatchResult.Outcome.DUPLICATE,
+                BatchResult.Outcome.APPLIED, BatchResult.Outcome.APPLIED, BatchResult.Outcome.APPLIED,
+                BatchResult.Outcome.APPLIED, BatchResult.Outcome.DUPLICATE), outcomes(saved));
+        assertEquals("Клиент 6", batched.getClientByPassport(String.format("%010d", 6)).getName());
+
+        BatchResult updated = batched.updateAll(numbered(6, 10, 5_000));
+        assertEquals(List.of(BatchResult.Outcome.APPLIED, BatchResult.Outcome.APPLIED,
+                BatchResult.Outcome.NOT_FOUND, BatchResult.Outcome.NOT_FOUND), outcomes(updated));
+        assertEquals(5_007, batched.getClientByPassport(String.format("%010d", 7)).getDepositKopecks());
+
+        BatchResult deleted = batched.deleteAll(List.of(String.format("%010d", 0), "9999999999",
+                String.format("%010d", 7), String.format("%010d", 0)));
+        assertEquals(List.of(BatchResult.Outcome.APPLIED, BatchResult.Outcome.NOT_FOUND,
+                BatchResult.Outcome.APPLIED, BatchResult.Outcome.NOT_FOUND), outcomes(deleted));
+        assertFalse(batched.clientExists(String.format("%010d", 7)));
+        assertEquals(6, batched.getStatistics().count());
+        assertEquals(0, batched.saveAll(List.of()).size());
+    }
+
+    private static List<BatchResult.Outcome> outcomes(BatchResult result) {
+        List<BatchResult.Outcome> outcomes = new ArrayList<>();
+        for (int i = 0; i < result.size(); i++) {
+            outcomes.add(result.get(i));
+        }
+        return outcomes;
+    }
+
+    // Ошибка откатывает только свой пакет: предыдущие записаны, строки с ошибочного - FAILED
+    @Test
+    void failedBatchIsRolledBackAndEarlierBatchesKept() throws SQLException {
+        try (Statement stmt = DatabaseConnection.getConnection().createStatement()) {
+            stmt.execute("CREATE TRIGGER block_insert BEFORE INSERT ON clients WHEN NEW.passport = '"
+                    + String.format("%010d", 4) + "' BEGIN SELECT RAISE(ABORT, 'blocked'); END");
+        }
+        ClientDAO batched = new ClientDAO(3);
+
+        BatchResult result = batched.saveAll(numbered(0, 8, 1_000));
+
+        assertFalse(result.isComplete());
+        assertNotNull(result.getError());
+        assertEquals(3, result.count(BatchResult.Outcome.APPLIED));
+        assertEquals(5, result.count(BatchResult.Outcome.FAILED));
+        assertEquals(3, batched.getStatistics().count());
+        assertFalse(batched.clientExists(String.format("%010d", 3)));
+        assertTrue(DatabaseConnection.getConnection().getAutoCommit());
+    }
+
+    // Курсор обхода - отдельное выражение: вызовы DAO внутри обхода его не сбрасывают
+    @Test
+    void streamingSurvivesNestedDaoCalls() throws SQLException {
+        assertNull(dao.saveAll(numbered(0, 50, 1_000)).getError());
+        dao.setFetchSize(7);
+        List<String> visited = new ArrayList<>();
+
+        dao.forEachClient(client -> {
+            try {
+                assertEquals(client.getName(), dao.getClientByPassport(client.getPassport()).getName());
+                assertEquals(50, dao.getStatistics().count());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            visited.add(client.getPassport());
+        });
+
+        assertEquals(passports(numbered(0, 50, 1_000)), visited);
+        assertEquals(visited, passports(dao.getAllClients()));
+        assertThrows(IllegalArgumentException.class, () -> dao.setFetchSize(0));
+    }
+
+    @Test
+    void streamReadsLazilyAndClosesCursor() throws SQLException {
+        assertNull(dao.saveAll(numbered(0, 20, 1_000)).getError());
+
+        try (Stream<Client> clients = dao.streamClients()) {
+            assertEquals(passports(numbered(0, 3, 1_000)), clients.limit(3).map(Client::getPassport).toList());
+        }
+        try (Stream<Client> clients = dao.streamClients()) {
+            assertEquals(20 * 1_000 + 190, clients.mapToLong(Client::getDepositKopecks).sum());
+        }
+
+        // Закрытые курсоры не мешают записи и полной замене таблицы
+        assertNull(dao.deleteAll(passports(numbered(0, 20, 0))).getError());
+        try (Stream<Client> clients = dao.streamClients()) {
+            assertEquals(0, clients.count());
+        }
+    }
+
+    // Исключение подписчика прерывает обход, курсор закрывается, DAO продолжает работать
+    @Test
+    void failingConsumerStopsTraversal() throws SQLException {
+        assertNull(dao.saveAll(numbered(0, 10, 1_000)).getError());
+        int[] seen = new int[1];
+
+        assertThrows(IllegalStateException.class, () -> dao.forEachClient(client -> {
+            if (++seen[0] == 4) {
+                throw new IllegalStateException("стоп");
+            }
+        }));
+
+        assertEquals(4, seen[0]);
+        dao.saveClient(client("Новый", "0000000099", 1));
+        assertEquals(11, dao.getAllClients().size());
+    }
+
+    // UPSERT с теми же данными не пишет строку: счетчик изменений и row_version не двигаются
+    @Test
+    void upsertOfSameDataIsNoOp() throws SQLException {
+        Client ivanov = ClientType.VIP.createClient("Иванов", "0000000001", 100_000);
+        assertTrue(dao.upsertClient(ivanov));
+        long version = dao.getChangeVersion();
+
+        assertFalse(dao.upsertClient(ClientType.VIP.createClient("Иванов", "0000000001", 100_000)));
+        assertEquals(version, dao.getChangeVersion());
+        assertEquals(0, dao.changesSince(version).size());
+
+        // Любое отличие (здесь - только ставка бонуса) записывается
+        BonusRegistry.setVipPercentage(0.2);
+        try {
+            assertTrue(dao.upsertClient(ClientType.VIP.restoreClient("Иванов", "0000000001",
+                    ivanov.getDepositKopecks(), BonusRegistry.forType(ClientType.VIP))));
+        } finally {
+            BonusRegistry.setVipPercentage(BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+        }
+        assertTrue(dao.getChangeVersion() > version);
+    }
+
+    @Test
+    void upsertAllReportsInsertedUpdatedUnchanged() throws SQLException {
+        ClientDAO batched = new ClientDAO(2);
+        assertNull(batched.saveAll(numbered(0, 3, 1_000)).getError());
+        long version = batched.getChangeVersion();
+
+        List<Client> rows = new ArrayList<>(numbered(0, 2, 1_000));
+        rows.add(client("Клиент 2", String.format("%010d", 2), 9_999));
+        rows.addAll(numbered(3, 5, 1_000));
+        rows.add(client("Клиент 4", String.format("%010d", 4), 1_004));
+        rows.add(client("Клиент 4", String.format("%010d", 4), 7_777));
+        BatchResult result = batched.upsertAll(rows);
+
+        assertTrue(result.isComplete());
+        assertEquals(List.of(BatchResult.Outcome.UNCHANGED, BatchResult.Outcome.UNCHANGED,
+                BatchResult.Outcome.UPDATED, BatchResult.Outcome.INSERTED, BatchResult.Outcome.INSERTED,
+                BatchResult.Outcome.UNCHANGED, BatchResult.Outcome.UPDATED), outcomes(result));
+        assertEquals(7_777, batched.getClientByPassport(String.format("%010d", 4)).getDepositKopecks());
+        // Неизмененные строки не попадают в изменения
+        assertEquals(List.of(String.format("%010d", 2), String.format("%010d", 3), String.format("%010d", 4)),
+                batched.changesSince(version).changed().stream().map(Client::getPassport).sorted().toList());
+    }
+
+    private static List<String> changedPassports(ChangeSet changes) {
+        return changes.changed().stream().map(Client::getPassport).sorted().toList();
+    }
+
+    // Номера изменений ставят триггеры: учитываются и запросы в обход ClientDAO
+    @Test
+    void changesSinceSeesInsertsUpdatesAndDeletes() throws Exception {
+        assertNull(dao.saveAll(numbered(0, 4, 1_000)).getError());
+        long version = dao.getChangeVersion();
+        assertEquals(4, version);
+
+        dao.updateClient(client("Клиент 1", String.format("%010d", 1), 5_000));
+        dao.updateClient(client("Клиент 1", String.format("%010d", 1), 6_000));
+        dao.deleteClient(String.format("%010d", 2));
+        writeFromOutside("UPDATE clients SET passport = '0000000009' WHERE passport = '0000000003'");
+        dao.saveClient(client("Новый", "0000000005", 1));
+
+        ChangeSet changes = dao.changesSince(version);
+        assertEquals(version + 5, changes.version());
+        assertEquals(List.of("0000000001", "0000000005", "0000000009"), changedPassports(changes));
+        assertEquals(6_000, changes.changed().stream()
+                .filter(client -> client.getPassport().equals("0000000001")).findFirst().orElseThrow()
+                .getDepositKopecks());
+        assertEquals(List.of("0000000002", "0000000003"), changes.removed().stream().sorted().toList());
+        assertTrue(dao.changesSince(changes.version()).isEmpty());
+    }
+
+    // Повторная вставка удаленного паспорта убирает его надгробие
+    @Test
+    void reinsertClearsTombstone() throws SQLException {
+        dao.saveClient(client("Иванов", "0000000001", 1_000));
+        long version = dao.getChangeVersion();
+        dao.deleteClient("0000000001");
+        assertEquals(List.of("0000000001"), dao.changesSince(version).removed());
+
+        dao.saveClient(client("Иванов", "0000000001", 2_000));
+
+        ChangeSet changes = dao.changesSince(version);
+        assertEquals(List.of("0000000001"), changedPassports(changes));
+        assertTrue(changes.removed().isEmpty());
+    }
+
+    @Test
+    void pruneRemovesOnlyOldTombstones() throws SQLException {
+        assertNull(dao.saveAll(numbered(0, 3, 1_000)).getError());
+        dao.deleteClient(String.format("%010d", 0));
+        long pruneAt = dao.getChangeVersion();
+        dao.deleteClient(String.format("%010d", 1));
+
+        assertEquals(1, dao.pruneTombstones(pruneAt));
+        assertEquals(List.of(String.format("%010d", 1)), dao.changesSince(0).removed());
+        assertEquals(String.valueOf(pruneAt), new SettingsDAO().get(SettingsDAO.TOMBSTONES_PRUNED_THROUGH));
+
+        // Граница не сдвигается назад
+        dao.pruneTombstones(0);
+        assertEquals(String.valueOf(pruneAt), new SettingsDAO().get(SettingsDAO.TOMBSTONES_PRUNED_THROUGH));
+    }
+
+    // Кэш, сверенный до удаленных надгробий, не может узнать об удалении и очищается целиком
+    @Test
+    void cacheIsClearedWhenNeededTombstonesWerePruned() throws Exception {
+        dao.saveClient(client("Иванов", "0000000001", 1_000));
+        assertTrue(dao.clientExists("0000000001"));
+
+        writeFromOutside("DELETE FROM clients WHERE passport = '0000000001'");
+        new ClientDAO().pruneTombstones(dao.getChangeVersion());
+        Thread.sleep(ClientCache.SYNC_INTERVAL_MILLIS + 20);
+
+        assertFalse(dao.clientExists("0000000001"));
+    }
+}
@@ -0,0 +1,153 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseConnectionTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseConnection.closeConnection();
+        DatabaseConnection.setUrl("jdbc:sqlite:" + directory.resolve("bank.db"));
+        DatabaseConnection.initializeDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.closeConnection();
+    }
+
+    // Поток, который открывает соединение и держит его, пока не сработает release
+    private static Thread holder(CountDownLatch opened, CountDownLatch release, AtomicReference<Throwable> failure) {
+        Thread thread = new Thread(() -> {
+            try {
+                DatabaseConnection.getConnection();
+                opened.countDown();
+                release.await();
+            } catch (Throwable e) {
+                failure.set(e);
+                opened.countDown();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    void threadReusesConnectionAndStatements() throws SQLException {
+        Connection connection = DatabaseConnection.getConnection();
+        PreparedStatement statement = DatabaseConnection.prepare("SELECT COUNT(*) FROM clients WHERE client_type = ?");
+        statement.setString(1, "Вип");
+
+        assertSame(connection, DatabaseConnection.getConnection());
+        assertSame(statement, DatabaseConnection.prepare("SELECT COUNT(*) FROM clients WHERE client_type = ?"));
+        assertEquals(1, DatabaseConnection.getOpenConnectionCount());
+    }
+
+    @Test
+    void releaseClosesAndNextCallReopens() throws SQLException {
+        Connection connection = DatabaseConnection.getConnection();
+
+        DatabaseConnection.releaseConnection();
+        assertTrue(connection.isClosed());
+        assertEquals(0, DatabaseConnection.getOpenConnectionCount());
+
+        assertNotSame(connection, DatabaseConnection.getConnection());
+        assertEquals(1, DatabaseConnection.getOpenConnectionCount());
+    }
+
+    // closeConnection закрывает соединения всех потоков; поток получает новое при следующем обращении
+    @Test
+    void closeConnectionBumpsGenerationAndReopens() throws SQLException {
+        Connection connection = DatabaseConnection.getConnection();
+        long generation = DatabaseConnection.getGeneration();
+
+        DatabaseConnection.closeConnection();
+
+        assertTrue(connection.isClosed());
+        assertTrue(DatabaseConnection.getGeneration() > generation);
+        Connection reopened = DatabaseConnection.getConnection();
+        assertNotSame(connection, reopened);
+        assertFalse(reopened.isClosed());
+    }
+
+    // Потоки, завершившиеся без releaseConnection, не занимают места: их соединения
+    // забираются при следующем открытии, поэтому больше MAX_CONNECTIONS потоков проходят без ожидания
+    @Test
+    void connectionsOfFinishedThreadsAreReclaimed() throws Exception {
+        List<Connection> abandoned = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < DatabaseConnection.MAX_CONNECTIONS * 2; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    Connection connection = DatabaseConnection.getConnection();
+                    synchronized (abandoned) {
+                        abandoned.add(connection);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(DatabaseConnection.getOpenConnectionCount() <= DatabaseConnection.MAX_CONNECTIONS);
+        assertTrue(abandoned.get(0).isClosed());
+    }
+
+    // Пока все MAX_CONNECTIONS соединений у живых потоков, новый поток ждет;
+    // когда один из них завершается, его соединение переходит ждущему
+    @Test
+    void openingWaitsForFreeSlot() throws Exception {
+        DatabaseConnection.releaseConnection();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch opened = new CountDownLatch(DatabaseConnection.MAX_CONNECTIONS);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch releaseRest = new CountDownLatch(1);
+        List<Thread> holders = new ArrayList<>();
+        holders.add(holder(opened, releaseFirst, failure));
+        for (int i = 1; i < DatabaseConnection.MAX_CONNECTIONS; i++) {
+            holders.add(holder(opened, releaseRest, failure));
+        }
+        assertTrue(opened.await(10, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(DatabaseConnection.MAX_CONNECTIONS, DatabaseConnection.getOpenConnectionCount());
+
+        CountDownLatch waiterOpened = new CountDownLatch(1);
+        Thread waiter = holder(waiterOpened, releaseRest, failure);
+        assertFalse(waiterOpened.await(300, TimeUnit.MILLISECONDS));
+
+        releaseFirst.countDown();
+        holders.get(0).join();
+        assertTrue(waiterOpened.await(5, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(DatabaseConnection.MAX_CONNECTIONS, DatabaseConnection.getOpenConnectionCount());
+
+        releaseRest.countDown();
+        waiter.join();
+        for (Thread thread : holders) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package database;
+
+import models.Client;
+import models.ClientType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalBackupTest {
+    // Около 3 МБ - несколько фрагментов по CHUNK_SIZE
+    private static final int CLIENTS = 40_000;
+
+    @TempDir
+    Path directory;
+    private IncrementalBackup backups;
+    private ClientDAO dao;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseConnection.setUrl("jdbc:sqlite:" + directory.resolve("bank.db"));
+        DatabaseConnection.initializeDatabase();
+        dao = new ClientDAO();
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.add(ClientType.REGULAR.createClient("Клиент " + i, String.format("%010d", i), 100_000 + i));
+        }
+        assertTrue(dao.saveAll(clients).isComplete());
+        backups = new IncrementalBackup(directory.resolve("backups"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.closeConnection();
+    }
+
+    @Test
+    void unchangedDatabaseStoresNothingNew() throws IOException, SQLException {
+        IncrementalBackup.Result first = backups.backup("b1");
+        IncrementalBackup.Result second = backups.backup("b2");
+
+        assertTrue(first.chunkCount() > 1);
+        assertEquals(first.chunkCount(), first.newChunks());
+        assertTrue(second.unchanged());
+        assertEquals(0, second.newChunks());
+        assertEquals(first.chunkCount(), countChunkFiles());
+    }
+
+    // После изменения одной строки копируются только измененные фрагменты
+    @Test
+    void changedRowStoresOnlyChangedChunks() throws IOException, SQLException, InterruptedException {
+        IncrementalBackup.Result first = backups.backup("b1");
+        // Время изменения файла должно отличаться от записанного в манифест
+        Thread.sleep(20);
+        dao.updateClient(ClientType.REGULAR.createClient("Изменен", "0000000005", 1));
+        IncrementalBackup.Result second = backups.backup("b2");
+
+        assertFalse(second.unchanged());
+        assertTrue(second.newChunks() > 0);
+        assertTrue(second.newChunks() < second.chunkCount(), "новых фрагментов " + second.newChunks());
+        assertEquals(first.chunkCount() + second.newChunks(), countChunkFiles());
+    }
+
+    @Test
+    void restoresEachVersion() throws IOException, SQLException, InterruptedException {
+        backups.backup("b1");
+        Thread.sleep(20);
+        dao.updateClient(ClientType.REGULAR.createClient("Изменен", "0000000005", 1));
+        dao.deleteClient("0000000006");
+        backups.backup("b2");
+
+        Path old = directory.resolve("old.db");
+        Path current = directory.resolve("current.db");
+        backups.restore(directory.resolve("backups").resolve("b1" + IncrementalBackup.MANIFEST_SUFFIX), old);
+        backups.restore(directory.resolve("backups").resolve("b2" + IncrementalBackup.MANIFEST_SUFFIX), current);
+
+        assertEquals(CLIENTS, queryLong(old, "SELECT COUNT(*) FROM clients"));
+        assertEquals(100_005, queryLong(old, "SELECT deposit_kopecks FROM clients WHERE passport = '0000000005'"));
+        assertEquals(CLIENTS - 1, queryLong(current, "SELECT COUNT(*) FROM clients"));
+        assertEquals(1, queryLong(current, "SELECT deposit_kopecks FROM clients WHERE passport = '0000000005'"));
+    }
+
+    @Test
+    void corruptedChunkFailsRestore() throws IOException, SQLException {
+        backups.backup("b1");
+        Path chunk;
+        try (Stream<Path> files = Files.walk(directory.resolve("backups").resolve("chunks"))) {
+            chunk = files.filter(Files::isRegularFile).findFirst().orElseThrow();
+        }
+        byte[] data = Files.readAllBytes(chunk);
+        data[data.length / 2] ^= 1;
+        Files.write(chunk, data);
+
+        Path target = directory.resolve("restored.db");
+        IOException error = assertThrows(IOException.class, () ->
+                backups.restore(directory.resolve("backups").resolve("b1" + IncrementalBackup.MANIFEST_SUFFIX), target));
+        assertTrue(error.getMessage().contains("поврежден"), error.getMessage());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void pruneRemovesUnreferencedChunks() throws IOException, SQLException, InterruptedException {
+        backups.backup("b1");
+        Thread.sleep(20);
+        dao.updateClient(ClientType.REGULAR.createClient("Изменен", "0000000005", 1));
+        IncrementalBackup.Result second = backups.backup("b2");
+
+        int removed = backups.prune(1);
+
+        assertTrue(removed > 0);
+        assertEquals(1, backups.listManifests().size());
+        assertEquals(second.chunkCount(), countChunkFiles());
+    }
+
+    private long countChunkFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.resolve("backups").resolve("chunks"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static long queryLong(Path db, String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next(), sql);
+            return rs.getLong(1);
+        }
+    }
+}
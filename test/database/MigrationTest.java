@@ -0,0 +1,144 @@
+package database;
+
+import models.ClientType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Обновление схемы старых файлов БД по PRAGMA user_version
+class MigrationTest {
+    @TempDir
+    Path directory;
+    private String url;
+
+    @BeforeEach
+    void setUp() {
+        url = "jdbc:sqlite:" + directory.resolve("bank.db");
+        DatabaseConnection.setUrl(url);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.closeConnection();
+    }
+
+    @Test
+    void createsCurrentSchemaForNewFile() throws SQLException {
+        DatabaseConnection.initializeDatabase();
+
+        assertEquals(5, queryLong("PRAGMA user_version"));
+        assertTrue(hasColumn("deposit_kopecks"));
+        assertTrue(hasColumn("row_version"));
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM change_counter"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM settings"));
+    }
+
+    // Файл версии 0: вклад в рублях (REAL), типы в произвольном написании, ставки только в строках
+    @Test
+    void migratesVersionZeroFile() throws SQLException {
+        execute("""
+                CREATE TABLE clients (passport TEXT PRIMARY KEY, name TEXT NOT NULL, deposit REAL NOT NULL,
+                    client_type TEXT NOT NULL, bonus_type TEXT, bonus_value REAL)""",
+                "INSERT INTO clients VALUES ('0000000001', 'Иванов', 1500.5, 'VIP', 'percentage', 0.2)",
+                "INSERT INTO clients VALUES ('0000000002', 'Петров', 19.99, 'вип', 'percentage', 0.2)",
+                "INSERT INTO clients VALUES ('0000000003', 'Сидоров', 100, 'Пенсионер', 'fixed', 750)",
+                "INSERT INTO clients VALUES ('0000000004', 'Кузнецов', 0.1, 'Обычный', 'none', 0)");
+
+        DatabaseConnection.initializeDatabase();
+
+        assertEquals(5, queryLong("PRAGMA user_version"));
+        assertFalse(hasColumn("deposit"));
+        assertEquals(150_050, queryLong("SELECT deposit_kopecks FROM clients WHERE passport = '0000000001'"));
+        assertEquals(1_999, queryLong("SELECT deposit_kopecks FROM clients WHERE passport = '0000000002'"));
+        assertEquals(10, queryLong("SELECT deposit_kopecks FROM clients WHERE passport = '0000000004'"));
+        // Типы приведены к названиям ClientType
+        assertEquals(2, queryLong("SELECT COUNT(*) FROM clients WHERE client_type = '" + ClientType.VIP.getTitle() + "'"));
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM clients WHERE client_type = '" + ClientType.REGULAR.getTitle() + "'"));
+        assertEquals("0.2", queryString("SELECT value FROM settings WHERE key = '" + SettingsDAO.VIP_PERCENTAGE + "'"));
+        assertEquals("75000", queryString("SELECT value FROM settings WHERE key = '" + SettingsDAO.PENSIONER_BONUS + "'"));
+    }
+
+    // Версия 1 уже хранит копейки; учет изменений и настройки появляются при обновлении
+    @Test
+    void migratesVersionOneFileAndTracksChanges() throws SQLException {
+        execute("""
+                CREATE TABLE clients (passport TEXT PRIMARY KEY, name TEXT NOT NULL, deposit_kopecks INTEGER NOT NULL,
+                    client_type TEXT NOT NULL, bonus_type TEXT, bonus_value REAL)""",
+                "INSERT INTO clients VALUES ('0000000001', 'Иванов', 100000, 'Обычный', 'none', 0)",
+                "PRAGMA user_version = 1");
+
+        DatabaseConnection.initializeDatabase();
+
+        assertEquals(5, queryLong("PRAGMA user_version"));
+        assertEquals(0, queryLong("SELECT row_version FROM clients WHERE passport = '0000000001'"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM settings"));
+
+        ClientDAO dao = new ClientDAO();
+        long before = dao.getChangeVersion();
+        dao.deleteClient("0000000001");
+        ChangeSet changes = dao.changesSince(before);
+        assertEquals(before + 1, changes.version());
+        assertEquals(1, changes.removed().size());
+    }
+
+    @Test
+    void repeatedInitializationKeepsData() throws SQLException {
+        DatabaseConnection.initializeDatabase();
+        execute("INSERT INTO settings (key, value) VALUES ('" + SettingsDAO.VIP_PERCENTAGE + "', '0.3')");
+
+        DatabaseConnection.initializeDatabase();
+
+        assertEquals(5, queryLong("PRAGMA user_version"));
+        assertEquals("0.3", queryString("SELECT value FROM settings WHERE key = '" + SettingsDAO.VIP_PERCENTAGE + "'"));
+    }
+
+    // Отдельное соединение, чтобы проверять файл, а не состояние DatabaseConnection
+    private void execute(String... statements) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next(), sql);
+            return rs.getLong(1);
+        }
+    }
+
+    private String queryString(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private boolean hasColumn(String column) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(clients)")) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
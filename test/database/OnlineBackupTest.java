@@ -0,0 +1,134 @@
+package database;
+
+import models.Client;
+import models.ClientType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OnlineBackupTest {
+    private static final int SEEDED = 2_000;
+
+    @TempDir
+    Path directory;
+    private ClientDAO dao;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DatabaseConnection.setUrl("jdbc:sqlite:" + directory.resolve("bank.db"));
+        DatabaseConnection.initializeDatabase();
+        dao = new ClientDAO();
+
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < SEEDED; i++) {
+            clients.add(ClientType.REGULAR.createClient("Клиент номер " + i, String.format("%010d", i), 1_000 + i));
+        }
+        assertNull(dao.saveAll(clients).getError());
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.closeConnection();
+    }
+
+    private static String queryString(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new OnlineBackup(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new OnlineBackup(1, -1));
+    }
+
+    // Записи других потоков во время копирования не ждут его конца и не попадают в копию:
+    // копия - целостный снимок на момент начала, счетчик изменений в ней сходится со строками
+    @Test
+    void backupIsConsistentSnapshotUnderConcurrentWrites() throws Exception {
+        long versionAtStart = dao.getChangeVersion();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger written = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                ClientDAO writerDao = new ClientDAO();
+                for (int i = SEEDED; !stop.get(); i++) {
+                    writerDao.saveClient(ClientType.VIP.createClient("Новый " + i, String.format("%010d", i), 5_000));
+                    writerDao.updateClient(ClientType.REGULAR.createClient("Изменен", String.format("%010d", i - SEEDED), 1));
+                    written.incrementAndGet();
+                    firstWrite.countDown();
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+                firstWrite.countDown();
+            } finally {
+                DatabaseConnection.releaseConnection();
+            }
+        });
+        AtomicInteger writtenDuringBackup = new AtomicInteger();
+        Path target = directory.resolve("copy.db");
+
+        OnlineBackup.Result result;
+        try {
+            result = new OnlineBackup(1, 1).backup(target, (copied, total) -> {
+                if (copied == 1) {
+                    // Снимок уже зафиксирован - запускаем запись и ждем первой фиксации
+                    writer.start();
+                    try {
+                        assertTrue(firstWrite.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                writtenDuringBackup.set(written.get());
+            });
+        } finally {
+            stop.set(true);
+            if (writer.getState() != Thread.State.NEW) {
+                writer.join();
+            }
+        }
+
+        assertNull(failure.get());
+        assertTrue(writtenDuringBackup.get() > 0);
+        assertTrue(result.pages() > 1);
+        assertFalse(Files.exists(directory.resolve("copy.db.part")));
+        assertEquals(SEEDED + written.get(), queryLong(DatabaseConnection.getConnection(), "SELECT COUNT(*) FROM clients"));
+
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + target)) {
+            DatabaseConnection.registerFunctions(copy);
+            assertEquals("ok", queryString(copy, "PRAGMA integrity_check"));
+            assertEquals(SEEDED, queryLong(copy, "SELECT COUNT(*) FROM clients"));
+            assertEquals(0, queryLong(copy, "SELECT COUNT(*) FROM clients WHERE name = 'Изменен'"));
+            assertEquals(versionAtStart, queryLong(copy, "SELECT version FROM change_counter WHERE id = 1"));
+            assertEquals(versionAtStart, queryLong(copy, "SELECT MAX(row_version) FROM clients"));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package database;
+
+import models.BonusRegistry;
+import models.Client;
+import models.ClientType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RerateJobTest {
+    @TempDir
+    Path directory;
+    private ClientDAO dao;
+    private List<Client> snapshot;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DatabaseConnection.setUrl("jdbc:sqlite:" + directory.resolve("bank.db"));
+        DatabaseConnection.initializeDatabase();
+        dao = new ClientDAO();
+
+        snapshot = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ClientType type = ClientType.values()[i % ClientType.values().length];
+            snapshot.add(type.createClient("Клиент " + i, String.format("%010d", i), 100_000 + i * 1_000));
+        }
+        assertNull(dao.saveAll(snapshot).getError());
+    }
+
+    @AfterEach
+    void tearDown() {
+        BonusRegistry.setVipPercentage(BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+        BonusRegistry.setPensionerBonus(BonusRegistry.DEFAULT_PENSIONER_BONUS);
+        DatabaseConnection.closeConnection();
+    }
+
+    // Сумма, которую дал бы новый клиент с тем же базовым вкладом по текущим ставкам
+    private static long expectedDeposit(int i) {
+        ClientType type = ClientType.values()[i % ClientType.values().length];
+        return type.createClient("Клиент " + i, String.format("%010d", i), 100_000 + i * 1_000).getDepositKopecks();
+    }
+
+    private static RerateJob job() {
+        return new RerateJob(ForkJoinPool.commonPool(), 1);
+    }
+
+    @Test
+    void rerateWritesNewRatesAndSkipsUnchanged() throws SQLException {
+        BonusRegistry.setVipPercentage(0.2);
+        BonusRegistry.setPensionerBonus(500_000);
+
+        RerateJob.Result result = job().run(snapshot, null);
+
+        int affected = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            Client stored = dao.getClientByPassport(snapshot.get(i).getPassport());
+            assertEquals(expectedDeposit(i), stored.getDepositKopecks(), stored.getName());
+            assertEquals(BonusRegistry.forType(stored.getClientType()), stored.getBonusStrategy());
+            if (snapshot.get(i).getClientType() != ClientType.REGULAR) {
+                affected++;
+            }
+        }
+        assertEquals(affected, result.count());
+        assertEquals(0, result.skipped());
+        for (int i = 0; i < result.count(); i++) {
+            assertEquals(result.replaced().get(i).getPassport(), result.clients().get(i).getPassport());
+            assertTrue(snapshot.contains(result.replaced().get(i)));
+        }
+
+        // Ставки не менялись - пересчитывать нечего
+        List<Client> current = dao.getAllClients();
+        assertEquals(0, job().run(current, null).count());
+    }
+
+    // Строка, измененная другим соединением между пакетами, не перезаписывается пересчетом
+    @Test
+    void concurrentEditIsNotOverwritten() throws Exception {
+        Client edited = snapshot.stream().filter(client -> client.getClientType() == ClientType.PENSIONER)
+                .reduce((first, second) -> second).orElseThrow();
+        Client edit = ClientType.PENSIONER.createClient("Изменен", edited.getPassport(), 777_000);
+        BonusRegistry.setVipPercentage(0.2);
+        BonusRegistry.setPensionerBonus(500_000);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        RerateJob.Result result = job().run(snapshot, (processed, total) -> {
+            if (processed != 1) {
+                return;
+            }
+            Thread writer = new Thread(() -> {
+                try {
+                    new ClientDAO().updateClient(edit);
+                } catch (Throwable e) {
+                    failure.set(e);
+                } finally {
+                    DatabaseConnection.releaseConnection();
+                }
+            });
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertNull(failure.get());
+
+        assertEquals(1, result.skipped());
+        assertFalse(result.replaced().contains(edited));
+        Client stored = dao.getClientByPassport(edited.getPassport());
+        assertEquals("Изменен", stored.getName());
+        assertEquals(edit.getDepositKopecks(), stored.getDepositKopecks());
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            Client client = snapshot.get(i);
+            if (client != edited) {
+                assertEquals(expectedDeposit(i), dao.getClientByPassport(client.getPassport()).getDepositKopecks());
+            }
+        }
+    }
+
+    // Смена типа после снимка тоже не дает записать сумму по ставке прежнего типа
+    @Test
+    void typeChangeAfterSnapshotIsSkipped() throws SQLException {
+        Client vip = snapshot.stream().filter(client -> client.getClientType() == ClientType.VIP)
+                .findFirst().orElseThrow();
+        dao.updateClient(ClientType.REGULAR.restoreClient(vip.getName(), vip.getPassport(), vip.getDepositKopecks(),
+                BonusRegistry.forType(ClientType.REGULAR)));
+        BonusRegistry.setVipPercentage(0.2);
+
+        RerateJob.Result result = job().run(snapshot, null);
+
+        assertEquals(1, result.skipped());
+        Client stored = dao.getClientByPassport(vip.getPassport());
+        assertEquals(ClientType.REGULAR, stored.getClientType());
+        assertEquals(vip.getDepositKopecks(), stored.getDepositKopecks());
+    }
+}
@@ -0,0 +1,122 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageProfileTest {
+    // PRAGMA synchronous возвращает число: OFF = 0, NORMAL = 1, FULL = 2
+    private static final int OFF = 0;
+    private static final int NORMAL = 1;
+    private static final int FULL = 2;
+
+    @TempDir
+    Path directory;
+    private StorageProfile defaultProfile;
+
+    @BeforeEach
+    void setUp() {
+        defaultProfile = DatabaseConnection.getStorageProfile();
+        DatabaseConnection.setStorageProfile(StorageProfile.BALANCED);
+        DatabaseConnection.setUrl("jdbc:sqlite:" + directory.resolve("bank.db"));
+        DatabaseConnection.initializeDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.closeConnection();
+        DatabaseConnection.setStorageProfile(defaultProfile);
+    }
+
+    private static String pragma(String name) throws SQLException {
+        try (Statement stmt = DatabaseConnection.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.getString(1);
+        }
+    }
+
+    private static int synchronous() throws SQLException {
+        return Integer.parseInt(pragma("synchronous"));
+    }
+
+    @Test
+    void profileByName() {
+        assertEquals(StorageProfile.BULK_LOAD, StorageProfile.fromName("bulk_load"));
+        assertEquals(StorageProfile.DURABLE, StorageProfile.fromName(" Durable "));
+        assertEquals(StorageProfile.BALANCED, StorageProfile.fromName(null));
+        assertEquals(StorageProfile.BALANCED, StorageProfile.fromName("быстрый"));
+    }
+
+    @Test
+    void everyProfileOpensInWalMode() throws SQLException {
+        int[] expected = {FULL, NORMAL, OFF};
+        for (StorageProfile profile : StorageProfile.values()) {
+            DatabaseConnection.closeConnection();
+            DatabaseConnection.setStorageProfile(profile);
+
+            assertEquals("wal", pragma("journal_mode").toLowerCase(), profile.name());
+            assertEquals(expected[profile.ordinal()], synchronous(), profile.name());
+        }
+    }
+
+    // Профиль по умолчанию меняется и у уже открытого соединения - при следующем обращении
+    @Test
+    void defaultProfileChangeReachesOpenConnection() throws SQLException {
+        assertEquals(NORMAL, synchronous());
+
+        DatabaseConnection.setStorageProfile(StorageProfile.DURABLE);
+
+        assertEquals(FULL, synchronous());
+        assertEquals(1, DatabaseConnection.getOpenConnectionCount());
+    }
+
+    @Test
+    void withProfileRestoresPreviousSettings() throws SQLException {
+        int inside = DatabaseConnection.withProfile(StorageProfile.BULK_LOAD, () -> {
+            // Вложенная область с тем же профилем ничего не меняет при выходе
+            DatabaseConnection.ProfileScope scope = DatabaseConnection.withProfile(StorageProfile.BULK_LOAD);
+            try {
+                assertEquals(OFF, synchronous());
+            } finally {
+                scope.close();
+            }
+            return synchronous();
+        });
+
+        assertEquals(OFF, inside);
+        assertEquals(NORMAL, synchronous());
+    }
+
+    @Test
+    void withProfileRestoresAfterError() throws SQLException {
+        SQLException error = assertThrows(SQLException.class,
+                () -> DatabaseConnection.withProfile(StorageProfile.DURABLE, () -> {
+                    throw new SQLException("ошибка задачи");
+                }));
+
+        assertEquals("ошибка задачи", error.getMessage());
+        assertEquals(NORMAL, synchronous());
+    }
+
+    // Внутри области смена профиля по умолчанию не сбрасывает временный профиль
+    @Test
+    void defaultChangeWaitsForScopeEnd() throws SQLException {
+        DatabaseConnection.ProfileScope scope = DatabaseConnection.withProfile(StorageProfile.BULK_LOAD);
+        try {
+            DatabaseConnection.setStorageProfile(StorageProfile.DURABLE);
+            assertEquals(OFF, synchronous());
+        } finally {
+            scope.close();
+        }
+
+        assertEquals(FULL, synchronous());
+    }
+}
@@ -0,0 +1,174 @@
+package database;
+
+import models.Bank;
+import models.Client;
+import models.ClientType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+    @TempDir
+    Path directory;
+    private ClientDAO dao;
+    private Bank bank;
+    private WriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseConnection.setUrl("jdbc:sqlite:" + directory.resolve("bank.db"));
+        DatabaseConnection.initializeDatabase();
+        dao = new ClientDAO();
+        bank = new Bank();
+        // Большая задержка: без flush() группа не пишется, пока идет проверка
+        queue = new WriteBehindQueue(dao, 60_000);
+        bank.addListener(queue);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.discard();
+        queue.close();
+        DatabaseConnection.closeConnection();
+    }
+
+    private static Client client(String name, String passport, long deposit) {
+        return ClientType.REGULAR.createClient(name, passport, deposit);
+    }
+
+    // Слушатель вызывается фоновым потоком записи уже после возврата из flush()
+    private static void awaitSize(List<?> list, int size) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void blockInserts(boolean blocked) throws SQLException {
+        try (Statement stmt = DatabaseConnection.getConnection().createStatement()) {
+            stmt.execute(blocked
+                    ? "CREATE TRIGGER block_insert BEFORE INSERT ON clients BEGIN SELECT RAISE(ABORT, 'blocked'); END"
+                    : "DROP TRIGGER block_insert");
+        }
+    }
+
+    // Несколько изменений одного паспорта пишутся одним - последним состоянием
+    @Test
+    void coalescesChangesOfOnePassport() throws SQLException {
+        bank.addClient(client("Иванов", "0000000001", 100));
+        bank.updateClient("0000000001", client("Иванов", "0000000001", 200));
+        bank.updateClient("0000000001", client("Иванов", "0000000001", 300));
+        bank.addClient(client("Петров", "0000000002", 100));
+        bank.removeClient("0000000002");
+
+        assertEquals(2, queue.getPendingCount());
+        assertTrue(queue.flush());
+
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(3, queue.getCoalescedChanges());
+        assertEquals(300, dao.getClientByPassport("0000000001").getDepositKopecks());
+        assertNull(dao.getClientByPassport("0000000002"));
+        assertEquals(1, queue.getWrittenGroups());
+    }
+
+    // После ошибки изменения возвращаются в очередь и записываются при следующей попытке
+    @Test
+    void requeuesFailedGroupAndReportsError() throws SQLException {
+        List<String> notifications = Collections.synchronizedList(new ArrayList<>());
+        queue.setErrorListener(error -> notifications.add(error != null ? "error" : "recovered"));
+        blockInserts(true);
+
+        bank.addClient(client("Иванов", "0000000001", 100));
+        assertFalse(queue.flush());
+        assertFalse(queue.flush());
+
+        assertEquals(1, queue.getPendingCount());
+        assertNotNull(queue.getLastError());
+        awaitSize(notifications, 1);
+        assertEquals(List.of("error"), notifications);
+
+        blockInserts(false);
+        assertTrue(queue.flush());
+
+        assertEquals(0, queue.getPendingCount());
+        assertNull(queue.getLastError());
+        awaitSize(notifications, 2);
+        assertEquals(List.of("error", "recovered"), notifications);
+        assertNotNull(dao.getClientByPassport("0000000001"));
+    }
+
+    // Более новое изменение паспорта, сделанное во время неудачной записи, не затирается повтором
+    @Test
+    void newerChangeWinsOverRequeuedOne() throws SQLException {
+        blockInserts(true);
+        bank.addClient(client("Иванов", "0000000001", 100));
+        assertFalse(queue.flush());
+        bank.updateClient("0000000001", client("Иванов", "0000000001", 500));
+        blockInserts(false);
+
+        assertTrue(queue.flush());
+
+        assertEquals(500, dao.getClientByPassport("0000000001").getDepositKopecks());
+    }
+
+    @Test
+    void discardDropsFailedChanges() throws SQLException {
+        blockInserts(true);
+        bank.addClient(client("Иванов", "0000000001", 100));
+        assertFalse(queue.flush());
+
+        assertEquals(1, queue.discard());
+        blockInserts(false);
+
+        assertTrue(queue.flush());
+        assertNull(dao.getClientByPassport("0000000001"));
+    }
+
+    // Изменения внутри runPersisted уже записаны вызывающим кодом и в очередь не попадают
+    @Test
+    void runPersistedWritesQueueFirstAndMutesAction() throws SQLException {
+        bank.addClient(client("Иванов", "0000000001", 100));
+
+        queue.runPersisted(() -> {
+            assertEquals(0, queue.getPendingCount());
+            bank.addClient(client("Петров", "0000000002", 100));
+        });
+
+        assertNotNull(dao.getClientByPassport("0000000001"));
+        assertEquals(0, queue.getPendingCount());
+        assertTrue(queue.flush());
+        assertNull(dao.getClientByPassport("0000000002"));
+
+        // После runPersisted изменения снова ставятся в очередь
+        bank.addClient(client("Сидоров", "0000000003", 100));
+        assertEquals(1, queue.getPendingCount());
+    }
+
+    @Test
+    void writesWithoutFlushAfterDelay() throws Exception {
+        WriteBehindQueue fast = new WriteBehindQueue(dao, 10);
+        Bank other = new Bank();
+        other.addListener(fast);
+        try {
+            other.addClient(client("Иванов", "0000000001", 100));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (fast.getWrittenChanges() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, fast.getWrittenChanges());
+            assertNotNull(dao.getClientByPassport("0000000001"));
+        } finally {
+            fast.close();
+        }
+    }
+}
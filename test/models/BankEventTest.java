@@ -0,0 +1,134 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankEventTest {
+    private Bank bank;
+    private List<List<BankEvent>> delivered;
+    private Client ivanov;
+
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        ivanov = client("Иванов", "0000000001", 100_000);
+        bank.addClient(ivanov);
+        delivered = new ArrayList<>();
+        bank.addListener(delivered::add);
+    }
+
+    private static Client client(String name, String passport, long deposit) {
+        return ClientType.REGULAR.createClient(name, passport, deposit);
+    }
+
+    @Test
+    void mergeRules() {
+        Client a = client("А", "0000000009", 1);
+        Client b = client("Б", "0000000009", 2);
+        Client c = client("В", "0000000009", 3);
+
+        assertNull(BankEvent.merge(BankEvent.added(a), BankEvent.removed(a)));
+        assertEquals(BankEvent.added(b), BankEvent.merge(BankEvent.added(a), BankEvent.updated(a, b)));
+        assertEquals(BankEvent.updated(a, c), BankEvent.merge(BankEvent.updated(a, b), BankEvent.updated(b, c)));
+        assertEquals(BankEvent.removed(a), BankEvent.merge(BankEvent.updated(a, b), BankEvent.removed(b)));
+        assertEquals(BankEvent.updated(a, b), BankEvent.merge(BankEvent.removed(a), BankEvent.added(b)));
+    }
+
+    @Test
+    void eventsOutsideBatchAreDeliveredOneByOne() {
+        Client updated = client("Иванов", "0000000001", 150_000);
+        bank.updateClient("0000000001", updated);
+        bank.removeClient("0000000001");
+        bank.removeClient("0000000001");
+
+        assertEquals(List.of(
+                List.of(BankEvent.updated(ivanov, updated)),
+                List.of(BankEvent.removed(updated))), delivered);
+    }
+
+    // Изменения одного паспорта сливаются, порядок - по первому изменению паспорта
+    @Test
+    void batchMergesChangesPerPassport() {
+        Client petrov = client("Петров", "0000000002", 1);
+        Client sidorov = client("Сидоров", "0000000003", 2);
+        Client ivanovLater = client("Иванов", "0000000001", 3);
+        Client ivanovLast = client("Иванов", "0000000001", 4);
+
+        bank.beginBatch();
+        bank.addClient(petrov);
+        bank.updateClient("0000000001", ivanovLater);
+        bank.addClient(sidorov);
+        bank.removeClient("0000000003");
+        bank.updateClient("0000000001", ivanovLast);
+        assertTrue(delivered.isEmpty());
+        bank.endBatch();
+
+        assertEquals(List.of(List.of(BankEvent.added(petrov), BankEvent.updated(ivanov, ivanovLast))), delivered);
+    }
+
+    @Test
+    void removeThenAddInBatchIsUpdate() {
+        Client replacement = client("Иванов", "0000000001", 5);
+
+        bank.beginBatch();
+        bank.removeClient("0000000001");
+        bank.addClient(replacement);
+        bank.endBatch();
+
+        assertEquals(List.of(List.of(BankEvent.updated(ivanov, replacement))), delivered);
+    }
+
+    @Test
+    void nestedBatchesDeliverAtOuterEnd() {
+        Client petrov = client("Петров", "0000000002", 1);
+
+        bank.beginBatch();
+        bank.beginBatch();
+        bank.addClient(petrov);
+        bank.endBatch();
+        assertTrue(delivered.isEmpty());
+        bank.removeClient("0000000001");
+        bank.endBatch();
+
+        assertEquals(List.of(List.of(BankEvent.added(petrov), BankEvent.removed(ivanov))), delivered);
+    }
+
+    @Test
+    void batchWithoutNetChangesDeliversNothing() {
+        bank.beginBatch();
+        bank.addClient(client("Петров", "0000000002", 1));
+        bank.removeClient("0000000002");
+        bank.endBatch();
+
+        bank.beginBatch();
+        bank.endBatch();
+
+        assertTrue(delivered.isEmpty());
+        assertThrows(IllegalStateException.class, bank::endBatch);
+    }
+
+    // Подписчик, отписавшийся при доставке, не мешает доставке остальным
+    @Test
+    void listenerMayUnsubscribeDuringDelivery() {
+        List<List<BankEvent>> other = new ArrayList<>();
+        BankListener once = new BankListener() {
+            @Override
+            public void bankChanged(List<BankEvent> events) {
+                other.add(events);
+                bank.removeListener(this);
+            }
+        };
+        bank.addListener(once);
+
+        bank.removeClient("0000000001");
+        bank.addClient(ivanov);
+
+        assertEquals(1, other.size());
+        assertEquals(2, delivered.size());
+    }
+}
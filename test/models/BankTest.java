@@ -0,0 +1,264 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankTest {
+    private Bank bank;
+
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        bank.addClient(client("Иванов", "0000000001", 100_000));
+        bank.addClient(client("Петров", "0000000002", 200_000));
+        bank.addClient(client("Сидоров", "0000000003", 300_000));
+    }
+
+    private static Client client(String name, String passport, long deposit) {
+        return ClientType.REGULAR.createClient(name, passport, deposit);
+    }
+
+    private List<String> passports() {
+        List<String> result = new ArrayList<>();
+        for (Client client : bank.getAllClients()) {
+            result.add(client.getPassport());
+        }
+        return result;
+    }
+
+    @Test
+    void addingExistingPassportIsRejected() {
+        Client original = bank.getClientByPassport("0000000002");
+
+        assertFalse(bank.addClient(client("Другой", "0000000002", 1)));
+        assertFalse(bank.addClient("Другой", 1, "0000000002", "Обычный"));
+
+        assertSame(original, bank.getClientByPassport("0000000002"));
+        assertEquals(3, bank.getClientCount());
+        assertEquals(600_000, bank.getTotalDepositsKopecks());
+    }
+
+    // Смена паспорта на чужой не должна молча заменять другого клиента
+    @Test
+    void updateToOtherClientsPassportIsRejected() {
+        Client first = bank.getClientByPassport("0000000001");
+        Client second = bank.getClientByPassport("0000000002");
+
+        assertFalse(bank.updateClient("0000000001", client("Иванов", "0000000002", 100_000)));
+
+        assertSame(first, bank.getClientByPassport("0000000001"));
+        assertSame(second, bank.getClientByPassport("0000000002"));
+        assertEquals(3, bank.getClientCount());
+        assertEquals(600_000, bank.getTotalDepositsKopecks());
+    }
+
+    @Test
+    void updateOfMissingClientIsRejected() {
+        assertFalse(bank.updateClient("0000000009", client("Нет", "0000000009", 1)));
+        assertEquals(3, bank.getClientCount());
+    }
+
+    @Test
+    void updateKeepsInsertionPosition() {
+        assertTrue(bank.updateClient("0000000001", client("Иванов", "0000000001", 150_000)));
+        assertEquals(List.of("0000000001", "0000000002", "0000000003"), passports());
+
+        assertTrue(bank.updateClient("0000000002", client("Петров", "0000000022", 200_000)));
+        assertEquals(List.of("0000000001", "0000000022", "0000000003"), passports());
+        assertNull(bank.getClientByPassport("0000000002"));
+        assertEquals(650_000, bank.getTotalDepositsKopecks());
+    }
+
+    // Смена паспорта приходит подписчикам одним списком: удаление старого и добавление нового
+    @Test
+    void passportChangeIsDeliveredAsOneList() {
+        List<List<BankEvent>> deliveries = new ArrayList<>();
+        bank.addListener(deliveries::add);
+
+        bank.updateClient("0000000003", client("Сидоров", "0000000033", 300_000));
+
+        assertEquals(1, deliveries.size());
+        List<BankEvent> events = deliveries.get(0);
+        assertEquals(2, events.size());
+        assertEquals(BankEvent.Type.REMOVED, events.get(0).type());
+        assertEquals("0000000003", events.get(0).getPassport());
+        assertEquals(BankEvent.Type.ADDED, events.get(1).type());
+        assertEquals("0000000033", events.get(1).getPassport());
+    }
+
+    // Снимок разделяется читателями до изменения и не меняется вместе с Bank
+    @Test
+    void snapshotIsSharedAndStableAcrossChanges() {
+        List<Client> snapshot = bank.getAllClients();
+        assertSame(snapshot, bank.getAllClients());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(client("Новый", "0000000004", 1)));
+
+        bank.removeClient("0000000001");
+        bank.addClient(client("Новый", "0000000004", 1));
+
+        assertEquals(3, snapshot.size());
+        assertEquals("0000000001", snapshot.get(0).getPassport());
+        assertNotSame(snapshot, bank.getAllClients());
+        assertEquals(List.of("0000000002", "0000000003", "0000000004"), passports());
+    }
+
+    @Test
+    void sortOrderChangeGivesNewSnapshot() {
+        bank.addClient(client("Абрамов", "0000000004", 1));
+        List<Client> inserted = bank.getAllClients();
+
+        bank.sortByName();
+
+        assertEquals("0000000004", inserted.get(3).getPassport());
+        assertEquals("0000000004", bank.getAllClients().get(0).getPassport());
+    }
+
+    // Случайные добавления, изменения (в том числе смена типа и паспорта) и удаления;
+    // model - те же клиенты, посчитанные без Bank
+    private static Map<String, Client> applyRandomChanges(Bank bank, long seed, int operations) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ClientType[] types = ClientType.values();
+        String[] names = {"Иванов", "иванов", "Петров", "Абрамов", "ёлкин", "Ёлкин", "Сидоров"};
+        Map<String, Client> model = new LinkedHashMap<>();
+        for (int i = 0; i < operations; i++) {
+            String passport = String.format("%010d", random.nextInt(150));
+            Client client = types[random.nextInt(types.length)].createClient(names[random.nextInt(names.length)],
+                    passport, random.nextInt(1, 50) * 1_000L);
+            int op = random.nextInt(10);
+            if (op < 4) {
+                if (bank.addClient(client)) {
+                    model.put(passport, client);
+                }
+            } else if (op < 7) {
+                if (bank.updateClient(passport, client)) {
+                    model.put(passport, client);
+                }
+            } else if (op < 8) {
+                String target = String.format("%010d", random.nextInt(150));
+                Client moved = client.getClientType().createClient(client.getName(), target, client.getDepositKopecks());
+                if (bank.updateClient(passport, moved)) {
+                    model.remove(passport);
+                    model.put(target, moved);
+                }
+            } else {
+                bank.removeClient(passport);
+                model.remove(passport);
+            }
+        }
+        return model;
+    }
+
+    @Test
+    void runningAggregatesMatchRecountAfterChanges() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Bank bank = new Bank();
+            Map<String, Client> model = applyRandomChanges(bank, seed, 2_000);
+
+            List<Long> deposits = new ArrayList<>();
+            long total = 0;
+            for (Client client : model.values()) {
+                deposits.add(client.getDepositKopecks());
+                total += client.getDepositKopecks();
+            }
+            Collections.sort(deposits);
+
+            assertEquals(model.size(), bank.getClientCount());
+            assertEquals(total, bank.getTotalDepositsKopecks());
+            for (ClientType type : ClientType.values()) {
+                long typeTotal = 0;
+                int typeCount = 0;
+                for (Client client : model.values()) {
+                    if (client.getClientType() == type) {
+                        typeCount++;
+                        typeTotal += client.getDepositKopecks();
+                    }
+                }
+                assertEquals(typeCount, bank.getClientCount(type), type.getTitle());
+                assertEquals(typeTotal, bank.getTotalDepositsKopecks(type), type.getTitle());
+            }
+
+            int count = deposits.size();
+            assertEquals(Money.toRubles(deposits.get(0)), bank.getMinDeposit());
+            assertEquals(Money.toRubles(deposits.get(count - 1)), bank.getMaxDeposit());
+            assertEquals(Money.toRubles(deposits.get((count - 1) / 2) + deposits.get(count / 2)) / 2,
+                    bank.getMedianDeposit());
+            int rank = (int) Math.ceil(0.9 * count);
+            assertEquals(Money.toRubles(deposits.get(rank - 1)), bank.getDepositPercentile(90));
+            long below = deposits.stream().filter(deposit -> deposit < 20_000).count();
+            assertEquals(below, bank.getDepositRank(200));
+            long between = deposits.stream().filter(deposit -> deposit >= 10_000 && deposit <= 30_000).count();
+            assertEquals(between, bank.countClientsWithDepositBetween(100, 300));
+        }
+    }
+
+    @Test
+    void aggregatesOfEmptiedBankAreZero() {
+        for (String passport : passports()) {
+            bank.removeClient(passport);
+        }
+
+        assertEquals(0, bank.getClientCount());
+        assertEquals(0, bank.getTotalDepositsKopecks());
+        assertEquals(0, bank.getClientCount(ClientType.REGULAR));
+        assertEquals(0, bank.getAverageDeposit());
+        assertEquals(0, bank.getMinDeposit());
+        assertEquals(0, bank.getMedianDeposit());
+        assertEquals(0, bank.getDepositPercentile(99));
+    }
+
+    // Индексы сортировки после изменений совпадают с полной сортировкой тех же клиентов
+    @Test
+    void sortIndexesMatchFullSortAfterChanges() {
+        Map<SortOrder, Comparator<Client>> orders = Map.of(
+                SortOrder.NAME, Comparator.comparing(Client::getName, Bank.TEXT_ORDER)
+                        .thenComparing(Client::getPassport),
+                SortOrder.DEPOSIT, Comparator.comparingLong(Client::getDepositKopecks)
+                        .thenComparing(Client::getPassport),
+                SortOrder.TYPE, Comparator.comparing(Client::getType, Bank.TEXT_ORDER)
+                        .thenComparing(Client::getPassport));
+
+        for (long seed = 1; seed <= 5; seed++) {
+            Bank bank = new Bank();
+            Map<String, Client> model = applyRandomChanges(bank, seed, 2_000);
+
+            for (Map.Entry<SortOrder, Comparator<Client>> order : orders.entrySet()) {
+                List<Client> expected = new ArrayList<>(model.values());
+                expected.sort(order.getValue());
+
+                bank.setSortOrder(order.getKey());
+                List<Client> sorted = bank.getAllClients();
+                assertEquals(expected.size(), sorted.size(), order.getKey().name());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertSame(expected.get(i), sorted.get(i), order.getKey() + ", позиция " + i);
+                }
+            }
+        }
+    }
+
+    // Измененный клиент переходит на новое место в индексе, а не остается на старом
+    @Test
+    void updateMovesClientInSortedOrder() {
+        bank.sortByDeposit();
+        assertEquals(List.of("0000000001", "0000000002", "0000000003"), passports());
+
+        bank.updateClient("0000000001", client("Иванов", "0000000001", 900_000));
+        assertEquals(List.of("0000000002", "0000000003", "0000000001"), passports());
+
+        bank.sortByName();
+        bank.updateClient("0000000003", client("Абрамов", "0000000003", 300_000));
+        assertEquals(List.of("0000000003", "0000000001", "0000000002"), passports());
+
+        bank.removeClient("0000000001");
+        assertEquals(List.of("0000000003", "0000000002"), passports());
+    }
+}
@@ -0,0 +1,75 @@
+package models;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BonusRegistryTest {
+    @AfterEach
+    void resetRates() {
+        BonusRegistry.setVipPercentage(BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+        BonusRegistry.setPensionerBonus(BonusRegistry.DEFAULT_PENSIONER_BONUS);
+    }
+
+    @Test
+    void sameRateKeepsInstance() {
+        BonusStrategy before = BonusRegistry.forType(ClientType.VIP);
+
+        BonusRegistry.setVipPercentage(BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+
+        assertSame(before, BonusRegistry.forType(ClientType.VIP));
+    }
+
+    // Строка по текущей ставке получает экземпляр реестра
+    @Test
+    void restoresCurrentRateAsRegistryInstance() {
+        BonusStrategy vip = BonusRegistry.forType(ClientType.VIP);
+        BonusStrategy pensioner = BonusRegistry.forType(ClientType.PENSIONER);
+
+        assertSame(vip, BonusRegistry.restore(ClientType.VIP, vip.getCode(), vip.getValue()));
+        assertSame(pensioner, BonusRegistry.restore(ClientType.PENSIONER, pensioner.getCode(), pensioner.getValue()));
+    }
+
+    // Строка по прежней ставке сохраняет свою стратегию; одинаковые значения - один экземпляр
+    @Test
+    void restoresPreviousRateAsSharedInstance() {
+        BonusRegistry.setVipPercentage(0.2);
+
+        BonusStrategy first = BonusRegistry.restore(ClientType.VIP, "percentage", 0.1);
+        BonusStrategy second = BonusRegistry.restore(ClientType.VIP, "percentage", 0.1);
+
+        assertEquals(new PercentageBonus(0.1), first);
+        assertNotEquals(BonusRegistry.forType(ClientType.VIP), first);
+        assertSame(first, second);
+        assertEquals(10_000, first.calculateBonus(100_000));
+    }
+
+    @Test
+    void restoresFixedBonusFromRubles() {
+        BonusStrategy restored = BonusRegistry.restore(ClientType.PENSIONER, "fixed", 750.0);
+
+        assertEquals(new FixedBonus(75_000), restored);
+        assertEquals(75_000, restored.calculateBonus(100_000));
+        assertEquals(100_000, restored.baseDeposit(175_000));
+    }
+
+    // Строки старых версий без кода бонуса получают текущую стратегию типа
+    @Test
+    void missingOrInvalidCodeFallsBackToCurrent() {
+        assertSame(BonusRegistry.forType(ClientType.VIP), BonusRegistry.restore(ClientType.VIP, null, 0));
+        assertSame(BonusRegistry.forType(ClientType.VIP), BonusRegistry.restore(ClientType.VIP, "unknown", 0.3));
+        assertSame(BonusRegistry.forType(ClientType.PENSIONER), BonusRegistry.restore(ClientType.PENSIONER, "fixed", -1));
+    }
+
+    @Test
+    void rerateReplacesOldBonusWithNew() {
+        long[] deposits = {110_000, 220_000, 330_000};
+        BonusStrategy oldStrategy = new PercentageBonus(0.1);
+        BonusStrategy newStrategy = new PercentageBonus(0.2);
+
+        BonusRegistry.rerate(deposits, 0, deposits.length, oldStrategy, newStrategy);
+
+        assertArrayEquals(new long[]{120_000, 240_000, 360_000}, deposits);
+    }
+}
@@ -0,0 +1,210 @@
+package models;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarClientStoreTest {
+    @AfterEach
+    void resetRates() {
+        BonusRegistry.setVipPercentage(BonusRegistry.DEFAULT_VIP_PERCENTAGE);
+    }
+
+    private static String passport(int id) {
+        return String.format("%010d", id);
+    }
+
+    private static Client client(ClientType type, String name, int id, long deposit) {
+        return type.createClient(name, passport(id), deposit);
+    }
+
+    private static List<String> passports(ColumnarClientStore store) {
+        List<String> result = new ArrayList<>();
+        store.forEachClient(client -> result.add(client.getPassport()));
+        return result;
+    }
+
+    private static void assertSameClient(Client expected, Client actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPassport(), actual.getPassport());
+        assertEquals(expected.getDepositKopecks(), actual.getDepositKopecks());
+        assertEquals(expected.getClientType(), actual.getClientType());
+        assertEquals(expected.getBonusStrategy(), actual.getBonusStrategy());
+    }
+
+    @Test
+    void storesAndRestoresClients() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        Client regular = client(ClientType.REGULAR, "Иванов Иван", 1, 10_000);
+        Client vip = client(ClientType.VIP, "Петрова Анна", 2, 100_000);
+        Client pensioner = client(ClientType.PENSIONER, "Сидоров", 3, 50_000);
+        store.addClient(regular);
+        store.addClient(vip);
+        store.addClient(pensioner);
+
+        assertEquals(3, store.size());
+        assertSameClient(regular, store.getClientByPassport(passport(1)));
+        assertSameClient(vip, store.getClientByPassport(passport(2)));
+        assertSameClient(pensioner, store.getClientByPassport(passport(3)));
+        assertEquals(List.of(passport(1), passport(2), passport(3)), passports(store));
+        assertEquals(regular.getDepositKopecks() + vip.getDepositKopecks() + pensioner.getDepositKopecks(),
+                store.getTotalDepositsKopecks());
+        assertEquals(1, store.getClientCount(ClientType.VIP));
+        assertEquals(vip.getDepositKopecks(), store.getTotalDepositsKopecks(ClientType.VIP));
+    }
+
+    // Повторное добавление паспорта заменяет строку на месте
+    @Test
+    void addingExistingPassportReplacesRow() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        store.addClient(client(ClientType.REGULAR, "Иванов", 1, 10_000));
+        store.addClient(client(ClientType.REGULAR, "Петров", 2, 20_000));
+        Client replacement = client(ClientType.VIP, "Иванов Иван", 1, 30_000);
+
+        store.addClient(replacement);
+
+        assertEquals(2, store.size());
+        assertSameClient(replacement, store.getClientByPassport(passport(1)));
+        assertEquals(List.of(passport(1), passport(2)), passports(store));
+    }
+
+    @Test
+    void removeAndMissingPassports() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        store.addClient(client(ClientType.REGULAR, "Иванов", 1, 10_000));
+
+        assertTrue(store.removeClient(passport(1)));
+        assertFalse(store.removeClient(passport(1)));
+        assertFalse(store.containsClient(passport(1)));
+        assertNull(store.getClientByPassport(passport(1)));
+        assertEquals(0, store.size());
+        assertEquals(0, store.getTotalDepositsKopecks());
+
+        assertFalse(store.containsClient("12345"));
+        assertNull(store.getClientByPassport("abcdefghij"));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.addClient(ClientType.REGULAR.createClient("Иванов", "123", 100)));
+    }
+
+    // Удаление больше половины строк сжимает столбцы и буфер имен; оставшиеся строки
+    // сохраняют порядок, имена и находятся по индексу
+    @Test
+    void compactionKeepsRemainingRows() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ClientType type = ClientType.values()[i % ClientType.values().length];
+            Client client = client(type, "Клиент " + i, i, 1000 + i);
+            clients.add(client);
+            store.addClient(client);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 4 == 0) {
+                expected.add(passport(i));
+            } else {
+                assertTrue(store.removeClient(passport(i)));
+            }
+        }
+
+        assertEquals(250, store.size());
+        assertEquals(expected, passports(store));
+        long total = 0;
+        for (int i = 0; i < 1000; i += 4) {
+            assertSameClient(clients.get(i), store.getClientByPassport(passport(i)));
+            total += clients.get(i).getDepositKopecks();
+        }
+        assertEquals(total, store.getTotalDepositsKopecks());
+        assertFalse(store.containsClient(passport(1)));
+
+        // После сжатия добавление снова работает
+        Client added = client(ClientType.VIP, "Новый", 5000, 7000);
+        store.addClient(added);
+        assertSameClient(added, store.getClientByPassport(passport(5000)));
+        assertEquals(251, store.size());
+    }
+
+    // Индекс с удалением сдвигом: цепочки пробирования не рвутся после удалений вперемешку
+    @Test
+    void interleavedAddRemoveKeepsIndexConsistent() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 200; i++) {
+                store.addClient(client(ClientType.REGULAR, "К" + i, round * 1000 + i, i));
+            }
+            for (int i = 0; i < 200; i += 2) {
+                assertTrue(store.removeClient(passport(round * 1000 + i)));
+            }
+        }
+
+        assertEquals(500, store.size());
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i % 2 == 1, store.containsClient(passport(round * 1000 + i)));
+            }
+        }
+    }
+
+    @Test
+    void updateKeepsOrMovesPassport() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        store.addClient(client(ClientType.REGULAR, "Иванов", 1, 10_000));
+        store.addClient(client(ClientType.REGULAR, "Петров", 2, 20_000));
+
+        Client renamed = client(ClientType.REGULAR, "Иванов Иван", 1, 15_000);
+        store.updateClient(passport(1), renamed);
+        assertSameClient(renamed, store.getClientByPassport(passport(1)));
+        assertEquals(List.of(passport(1), passport(2)), passports(store));
+
+        Client moved = client(ClientType.REGULAR, "Иванов Иван", 3, 15_000);
+        store.updateClient(passport(1), moved);
+        assertFalse(store.containsClient(passport(1)));
+        assertSameClient(moved, store.getClientByPassport(passport(3)));
+        assertEquals(2, store.size());
+
+        // Неверный новый паспорт не теряет клиента
+        Client invalid = ClientType.REGULAR.createClient("Петров", "12", 20_000);
+        assertThrows(IllegalArgumentException.class, () -> store.updateClient(passport(2), invalid));
+        assertTrue(store.containsClient(passport(2)));
+    }
+
+    @Test
+    void rerateChangesOnlyRowsOfOldStrategy() {
+        ColumnarClientStore store = new ColumnarClientStore();
+        BonusStrategy oldRate = BonusRegistry.forType(ClientType.VIP);
+        store.addClient(client(ClientType.VIP, "Петрова", 1, 100_000));
+        store.addClient(client(ClientType.REGULAR, "Иванов", 2, 100_000));
+        long regular = store.getClientByPassport(passport(2)).getDepositKopecks();
+
+        BonusRegistry.setVipPercentage(0.2);
+        BonusStrategy newRate = BonusRegistry.forType(ClientType.VIP);
+
+        assertEquals(1, store.rerate(ClientType.VIP, oldRate, newRate));
+        Client expected = client(ClientType.VIP, "Петрова", 1, 100_000);
+        assertSameClient(expected, store.getClientByPassport(passport(1)));
+        assertEquals(regular, store.getClientByPassport(passport(2)).getDepositKopecks());
+        assertEquals(0, store.rerate(ClientType.VIP, oldRate, newRate));
+    }
+
+    @Test
+    void convertsToAndFromBank() {
+        Bank bank = new Bank();
+        bank.addClient(client(ClientType.VIP, "Петрова", 2, 100_000));
+        bank.addClient(client(ClientType.REGULAR, "Иванов", 1, 10_000));
+
+        ColumnarClientStore store = ColumnarClientStore.fromBank(bank);
+        Bank restored = store.toBank();
+
+        assertEquals(bank.getClientCount(), restored.getClientCount());
+        assertEquals(bank.getTotalDepositsKopecks(), restored.getTotalDepositsKopecks());
+        for (Client client : bank.getAllClients()) {
+            assertSameClient(client, restored.getClientByPassport(client.getPassport()));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Дерево сравнивается с отсортированным списком тех же сумм
+class DepositIndexTest {
+    @Test
+    void emptyIndex() {
+        DepositIndex index = new DepositIndex();
+
+        assertEquals(0, index.size());
+        assertEquals(0, index.countLess(100));
+        assertEquals(0, index.countLessOrEqual(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.select(0));
+    }
+
+    @Test
+    void duplicatesShareRanks() {
+        DepositIndex index = new DepositIndex();
+        for (long value : new long[]{500, 100, 500, 300, 500}) {
+            index.add(value);
+        }
+
+        assertEquals(5, index.size());
+        assertEquals(2, index.countLess(500));
+        assertEquals(5, index.countLessOrEqual(500));
+        assertEquals(1, index.countLess(300));
+        assertEquals(1, index.countLessOrEqual(299));
+        assertEquals(100, index.select(0));
+        assertEquals(300, index.select(1));
+        assertEquals(500, index.select(2));
+        assertEquals(500, index.select(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.select(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.select(-1));
+
+        index.remove(500);
+        assertEquals(4, index.size());
+        assertEquals(4, index.countLessOrEqual(500));
+    }
+
+    @Test
+    void removingMissingValueChangesNothing() {
+        DepositIndex index = new DepositIndex();
+        index.add(100);
+        index.add(200);
+
+        index.remove(150);
+
+        assertEquals(2, index.size());
+        assertEquals(200, index.select(1));
+    }
+
+    @Test
+    void matchesSortedListUnderRandomChanges() {
+        SplittableRandom random = new SplittableRandom(7);
+        DepositIndex index = new DepositIndex();
+        List<Long> expected = new ArrayList<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                // Узкий диапазон - много одинаковых сумм
+                long value = random.nextLong(-50, 1_000);
+                index.add(value);
+                insertSorted(expected, value);
+            } else {
+                long value = expected.get(random.nextInt(expected.size()));
+                index.remove(value);
+                expected.remove(Collections.binarySearch(expected, value));
+            }
+
+            if (step % 500 == 0) {
+                assertMatches(expected, index, random);
+            }
+        }
+        assertMatches(expected, index, random);
+    }
+
+    @Test
+    void extremeValues() {
+        DepositIndex index = new DepositIndex();
+        index.add(Long.MIN_VALUE);
+        index.add(Long.MAX_VALUE);
+        index.add(0);
+
+        assertEquals(Long.MIN_VALUE, index.select(0));
+        assertEquals(Long.MAX_VALUE, index.select(2));
+        assertEquals(0, index.countLess(Long.MIN_VALUE));
+        assertEquals(3, index.countLessOrEqual(Long.MAX_VALUE));
+    }
+
+    private static void assertMatches(List<Long> expected, DepositIndex index, SplittableRandom random) {
+        assertEquals(expected.size(), index.size());
+        for (int k = 0; k < expected.size(); k++) {
+            assertEquals(expected.get(k), index.select(k), "select(" + k + ")");
+        }
+        for (int i = 0; i < 200; i++) {
+            long value = random.nextLong(-60, 1_010);
+            assertEquals(countLess(expected, value), index.countLess(value), "countLess(" + value + ")");
+            assertEquals(countLess(expected, value + 1), index.countLessOrEqual(value), "countLessOrEqual(" + value + ")");
+        }
+    }
+
+    private static void insertSorted(List<Long> list, long value) {
+        int position = Collections.binarySearch(list, value);
+        list.add(position >= 0 ? position : -position - 1, value);
+    }
+
+    private static int countLess(List<Long> sorted, long value) {
+        int count = 0;
+        for (long element : sorted) {
+            if (element < value) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,74 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+    @Test
+    void parsesRublesAndKopecks() {
+        assertEquals(150_000, Money.parse("1500"));
+        assertEquals(150_050, Money.parse("1500.5"));
+        assertEquals(150_050, Money.parse("1500.50"));
+        assertEquals(150_005, Money.parse("1500.05"));
+        assertEquals(150_000, Money.parse("1500."));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(0, Money.parse("0"));
+    }
+
+    @Test
+    void parsesSpacesCommaAndSign() {
+        assertEquals(150_050, Money.parse(" 1 500,50 "));
+        assertEquals(-307, Money.parse("-3.07"));
+        assertEquals(-307, Money.parse("-3,07"));
+    }
+
+    // Разбор без double: большие суммы не теряют копейки
+    @Test
+    void parsesLargeAmountsExactly() {
+        assertEquals(99_999_999_999_999_999L, Money.parse("999999999999999.99"));
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThrows(NumberFormatException.class, () -> Money.parse(null));
+        assertThrows(NumberFormatException.class, () -> Money.parse(""));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.234"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("."));
+        assertThrows(NumberFormatException.class, () -> Money.parse("--1"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e5"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1000000000000000"));
+    }
+
+    @Test
+    void formatsWithTwoDigits() {
+        assertEquals("1500.50", Money.format(150_050));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("0.00", Money.format(0));
+        assertEquals("-3.07", Money.format(-307));
+        assertEquals("-0.07", Money.format(-7));
+    }
+
+    @Test
+    void formatAndParseRoundTrip() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 10_000; i++) {
+            long kopecks = random.nextLong(-10_000_000_000L, 10_000_000_000L);
+            assertEquals(kopecks, Money.parse(Money.format(kopecks)));
+        }
+    }
+
+    // Перевод из double округляет до ближайшей копейки, а не отбрасывает дробную часть
+    @Test
+    void roundsRublesToNearestKopeck() {
+        assertEquals(30, Money.fromRubles(0.1 + 0.2));
+        assertEquals(1_999, Money.fromRubles(19.99));
+        assertEquals(116, Money.fromRubles(1.155999));
+        assertEquals(-1_999, Money.fromRubles(-19.99));
+        assertEquals(19.99, Money.toRubles(1_999));
+    }
+}
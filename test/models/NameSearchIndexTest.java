@@ -0,0 +1,64 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameSearchIndexTest {
+    private NameSearchIndex index;
+    private Client ivanov;
+    private Client petrov;
+    private Client orlova;
+
+    @BeforeEach
+    void setUp() {
+        index = new NameSearchIndex();
+        ivanov = ClientType.REGULAR.createClient("Иванов Иван", "0000000001", 100);
+        petrov = ClientType.REGULAR.createClient("Петров Пётр", "0000000002", 100);
+        orlova = ClientType.REGULAR.createClient("Орлова Анна", "0000000003", 100);
+        index.add(ivanov);
+        index.add(petrov);
+        index.add(orlova);
+    }
+
+    @Test
+    void prefixMatchesComeFirst() {
+        assertEquals(List.of(ivanov), index.search("иван", 10));
+        assertEquals(List.of(orlova, ivanov, petrov), index.search("о", 10));
+    }
+
+    // Запросы короче триграммы находят вхождения внутри слов
+    @Test
+    void findsOneAndTwoCharacterSubstrings() {
+        assertEquals(List.of(ivanov, orlova, petrov), index.search("ов", 10));
+        assertEquals(List.of(ivanov, orlova, petrov), index.search("в", 10));
+        assertEquals(List.of(orlova), index.search("нн", 10));
+    }
+
+    @Test
+    void findsSubstringsThroughTrigrams() {
+        assertEquals(List.of(orlova), index.search("рлов", 10));
+        assertEquals(List.of(petrov), index.search("ПЕТР", 10));
+    }
+
+    @Test
+    void normalizesCaseAndYo() {
+        assertEquals(List.of(petrov), index.search("пётр", 10));
+        assertEquals(List.of(petrov), index.search("петр", 10));
+        assertEquals(List.of(ivanov), index.search("  ИВАНОВ   иван ", 10));
+    }
+
+    @Test
+    void respectsLimitAndRemoval() {
+        assertEquals(1, index.search("в", 1).size());
+
+        index.remove(ivanov);
+
+        assertEquals(List.of(orlova, petrov), index.search("ов", 10));
+        assertTrue(index.search("иван", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+    }
+}